@@ -0,0 +1,273 @@
+/*************************************************************************
+ *  Compilation:  javac BatchSolver.java
+ *  Execution:    java BatchSolver puzzles.txt|corpus.bin [-a astar | idastar | bidirectional]
+ *                    [-h manhattan | hamming | linear | pdb.dat]
+ *                    [-t timeoutMillis] [-n maxNodes] [-p threads]
+ *
+ *  Solves many boards in parallel. The input file holds any number of
+ *  puzzles, each an integer N followed by N x N ints, read as a stream,
+ *  or is a binary BoardCorpus, recognised by its magic number.
+ *  Boards are solved on a work-stealing ForkJoinPool sized to the cores.
+ *  Results come back in input order, and only a few boards per thread
+ *  are read ahead of the oldest unfinished one.
+ *
+ *  Each board gets its own node and time limit, so a pathological board
+ *  is reported as NODE_LIMIT or TIMEOUT instead of stalling the batch.
+ *  A board whose search throws, or runs out of heap or stack, is
+ *  reported as FAILED, with the exception, and the rest of the batch
+ *  carries on. So is a record that does not make a board, such as one
+ *  with a repeated or out-of-range tile; reading stops only when the
+ *  input itself cannot be read further, such as a truncated file or a
+ *  token that is not an integer. An algorithm and heuristic that Solver cannot combine are
+ *  rejected by the constructor, before any board is read.
+ *
+ *  Output: one line per board, "index status moves millis", followed by
+ *  the exception class and message for a FAILED board.
+ *
+ *************************************************************************/
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class BatchSolver {
+    private static final int READ_AHEAD = 4;    // boards in flight per thread
+
+    // how the search for one board ended
+    public enum Status { SOLVED, UNSOLVABLE, TIMEOUT, NODE_LIMIT, FAILED }
+
+    // outcome of solving one board
+    public static class Result {
+        private final int index;        // position of the board in the input, from 0
+        private final Status status;
+        private final int moves;        // min number of moves; -1 unless SOLVED
+        private final long millis;      // time spent on the board
+        private final String error;     // exception class and message; null unless FAILED
+
+        Result(int index, Status status, int moves, long millis, String error) {
+            this.index = index;
+            this.status = status;
+            this.moves = moves;
+            this.millis = millis;
+            this.error = error;
+        }
+
+        public int index()        { return index;  }
+        public Status status()    { return status; }
+        public int moves()        { return moves;  }
+        public long millis()      { return millis; }
+        public String error()     { return error;  }
+
+        public String toString() {
+            String s = index + " " + status + " " + moves + " " + millis;
+            return error == null ? s : s + " " + error;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final Solver.Algorithm algorithm;
+    private final Heuristic heuristic;      // shared by all threads, must be read-only
+    private final long maxNodes;            // per-board node limit
+    private final long timeoutMillis;       // per-board time limit
+
+    // solve with one thread per core and no limits
+    public BatchSolver(Solver.Algorithm algorithm, Heuristic heuristic) {
+        this(Runtime.getRuntime().availableProcessors(), algorithm, heuristic,
+             Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public BatchSolver(int threads, Solver.Algorithm algorithm, Heuristic heuristic,
+                       long maxNodes, long timeoutMillis) {
+        if (algorithm == null || heuristic == null) throw new NullPointerException();
+        if (threads < 1 || maxNodes < 1 || timeoutMillis < 1) throw new IllegalArgumentException();
+        Solver.checkSupported(algorithm, heuristic);
+        this.pool = new ForkJoinPool(threads);
+        this.algorithm = algorithm;
+        this.heuristic = heuristic;
+        this.maxNodes = maxNodes;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // results for boards, in input order
+    public Iterable<Result> solve(final Iterable<Board> boards) {
+        return new Iterable<Result>() {
+            public Iterator<Result> iterator() {
+                return new ResultIterator(boards.iterator());
+            }
+        };
+    }
+
+    // stop the worker threads once all results have been taken
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private Result solveOne(int index, Board board) {
+        long start = System.nanoTime();
+        Status status;
+        int moves = -1;
+        Throwable failure = null;
+        try {
+            Solver solver = new Solver(board, algorithm, heuristic, maxNodes, timeoutMillis);
+            moves = solver.moves();
+            status = solver.isSolvable() ? Status.SOLVED : Status.UNSOLVABLE;
+        } catch (Solver.LimitExceededException e) {
+            status = e.isTimeout() ? Status.TIMEOUT : Status.NODE_LIMIT;
+        } catch (RuntimeException e) {
+            status = Status.FAILED;
+            failure = e;
+        } catch (OutOfMemoryError e) {      // the search's nodes are garbage once we get here
+            status = Status.FAILED;
+            failure = e;
+        } catch (StackOverflowError e) {
+            status = Status.FAILED;
+            failure = e;
+        }
+        return new Result(index, status, moves, (System.nanoTime() - start) / 1000000,
+                          failure == null ? null : failure.toString());
+    }
+
+    // submits boards ahead of the caller and hands back results in order
+    private class ResultIterator implements Iterator<Result> {
+        private final Iterator<Board> boards;
+        private final ArrayDeque<ForkJoinTask<Result>> pending = new ArrayDeque<ForkJoinTask<Result>>();
+        private final int window = READ_AHEAD * pool.getParallelism();
+        private int submitted = 0;
+
+        ResultIterator(Iterator<Board> boards) {
+            this.boards = boards;
+        }
+
+        private void fill() {
+            while (pending.size() < window && boards.hasNext()) {
+                final int index = submitted++;
+                final Board board;
+                try {
+                    board = boards.next();
+                } catch (RuntimeException e) {  // a bad record; the ones after it may be fine
+                    pending.addLast(failed(index, e));
+                    continue;
+                }
+                pending.addLast(pool.submit(new Callable<Result>() {
+                    public Result call() {
+                        return solveOne(index, board);
+                    }
+                }));
+            }
+        }
+
+        // an already completed task whose result reports board index as FAILED
+        private ForkJoinTask<Result> failed(int index, RuntimeException e) {
+            final Result result = new Result(index, Status.FAILED, -1, 0, e.toString());
+            ForkJoinTask<Result> task = ForkJoinTask.adapt(new Callable<Result>() {
+                public Result call() {
+                    return result;
+                }
+            });
+            task.invoke();
+            return task;
+        }
+
+        public boolean hasNext() {
+            fill();
+            return !pending.isEmpty();
+        }
+
+        public Result next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return pending.removeFirst().join();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // the boards in a multi-puzzle input, read lazily; a record that is
+    // read in full but is not a valid board throws from next() and the
+    // records after it can still be read, while a read error ends the input
+    public static Iterable<Board> readBoards(final In in) {
+        return new Iterable<Board>() {
+            public Iterator<Board> iterator() {
+                return new Iterator<Board>() {
+                    private boolean broken = false;     // a read failed, so the stream is out of step
+
+                    public boolean hasNext() {
+                        return !broken && !in.isEmpty();
+                    }
+
+                    public Board next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        int[][] blocks;
+                        try {
+                            int N = in.readInt();
+                            blocks = new int[N][N];
+                            for (int i = 0; i < N; i++)
+                                for (int j = 0; j < N; j++)
+                                    blocks[i][j] = in.readInt();
+                        } catch (RuntimeException e) {
+                            broken = true;
+                            throw e;
+                        }
+                        return new Board(blocks);
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    public static void main(String[] args) throws IOException {
+        Solver.Algorithm algorithm = Solver.Algorithm.ASTAR;
+        Heuristic heuristic = Heuristic.MANHATTAN;
+        long timeoutMillis = Long.MAX_VALUE;
+        long maxNodes = Long.MAX_VALUE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("option " + args[i] + " needs a value");
+            }
+            String value = args[i + 1];
+            if (args[i].equals("-a")) {
+                algorithm = Solver.Algorithm.valueOf(value.toUpperCase());
+            } else if (args[i].equals("-h")) {
+                if (value.equalsIgnoreCase("manhattan"))    heuristic = Heuristic.MANHATTAN;
+                else if (value.equalsIgnoreCase("hamming")) heuristic = Heuristic.HAMMING;
+                else if (value.equalsIgnoreCase("linear"))  heuristic = Heuristic.LINEAR_CONFLICT;
+                else                                        heuristic = PatternDatabase.load(value);
+            } else if (args[i].equals("-t")) {
+                timeoutMillis = Long.parseLong(value);
+            } else if (args[i].equals("-n")) {
+                maxNodes = Long.parseLong(value);
+            } else if (args[i].equals("-p")) {
+                threads = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        Stopwatch timer = new Stopwatch();
+        BatchSolver batch = new BatchSolver(threads, algorithm, heuristic, maxNodes, timeoutMillis);
+        int[] counts = new int[Status.values().length];
+        Iterable<Board> boards = BoardCorpus.isCorpus(args[0])
+            ? BoardCorpus.open(args[0]) : readBoards(new In(args[0]));
+        for (Result result : batch.solve(boards)) {
+            StdOut.println(result);
+            counts[result.status().ordinal()]++;
+        }
+        batch.shutdown();
+
+        StdOut.print("# " + timer.elapsedTime() + "s");
+        for (Status status : Status.values()) {
+            StdOut.print(", " + status + " = " + counts[status.ordinal()]);
+        }
+        StdOut.println();
+    }
+}
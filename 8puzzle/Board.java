@@ -5,101 +5,307 @@
  *  Takes the name of a file as a command-line argument.
  *  Reads in an integer N followed by N x N int between 0 ~ N*N - 1
  *
+ *  Boards may also be rectangular, rows x cols (from an int[][] or a
+ *  BoardCorpus); the goal is still 1, 2, ... in row-major order with the
+ *  blank last. dimension() is the number of rows.
+ *
+ *  The tiles are packed row-major into a byte[] (unsigned; rows and cols
+ *  are at most 16, so tiles fit in a byte and a line's conflicts in a long).
+ *  A neighbor differs from its parent by a single swap, so it copies the
+ *  parent's array once and carries the hamming and manhattan values
+ *  forward as deltas of the one tile that moved. The same holds for the
+ *  64-bit Zobrist hash used by BoardTable, and for the linear conflicts:
+ *  a vertical move only changes the two rows involved, a horizontal move
+ *  only the two columns.
+ *
  *************************************************************************/
 
+import java.util.Arrays;
+
 public class Board {
-    private int[][] tiles;      // board state
-    private int N;              // N * N total size
-    private int zeroX, zeroY;   // zero position 
+    private static final int MAX_SIDE = 16;
+
+    private final byte[] tiles;     // board state, tiles[i*cols + j] = block in row i, column j
+    private final int rows;         // number of rows
+    private final int cols;         // number of columns
+    private final int blank;        // zero position (row-major index)
+    private final int hamming;      // cached number of blocks out of place
+    private final int manhattan;    // cached sum of Manhattan distances
+    private final int conflicts;    // cached linear conflicts over all rows and columns
+    private final long zobrist;     // Zobrist hash over (position, tile) of non-blank tiles
 
 // construct a board from an N-by-N array of blocks (where blocks[i][j] = block in row i, column j)
     public Board(int[][] blocks) {
-        N = blocks.length;  
-        tiles = new int[N][N];
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                tiles[i][j] = blocks[i][j];
-                if (blocks[i][j] == 0) {    // zero position
-                    zeroX = i;
-                    zeroY = j;
-                }
+        this(pack(blocks), blocks.length, blocks.length == 0 ? 0 : blocks[0].length);
+    }
+
+    // construct a board that takes ownership of packed tiles, computing heuristics from scratch;
+    // the tiles must be a permutation of 0 to rows*cols - 1
+    Board(byte[] tiles, int rows, int cols) {
+        if (rows < 1 || cols < 1 || rows > MAX_SIDE || cols > MAX_SIDE || tiles.length != rows*cols) {
+            throw new IllegalArgumentException("Board must be between 1 x 1 and "
+                + MAX_SIDE + " x " + MAX_SIDE + ", not " + rows + " x " + cols);
+        }
+        this.tiles = tiles;
+        this.rows = rows;
+        this.cols = cols;
+        int zero = -1;
+        int outNum = 0;
+        int manDist = 0;
+        long hash = 0;
+        long[] seen = new long[(tiles.length + 63) / 64];  // bit t is set once tile t is found
+        for (int i = 0; i < tiles.length; i++) {
+            int tile = tileAt(i);
+            if (tile >= tiles.length || (seen[tile >>> 6] & (1L << tile)) != 0) {
+                throw new IllegalArgumentException("tiles must be a permutation of 0 to "
+                    + (tiles.length - 1) + ", but " + tile + " is out of range or repeated");
+            }
+            seen[tile >>> 6] |= 1L << tile;
+            if (tile == 0) {    // blank
+                zero = i;
+                continue;
+            }
+            if (tile != i + 1) {
+                outNum++;
             }
+            manDist += distance(tile, i);
+            hash ^= zobristKey(i, tile);
+        }
+        this.blank = zero;
+        this.hamming = outNum;
+        this.manhattan = manDist;
+        this.zobrist = hash;
+
+        int lineConf = 0;
+        for (int row = 0; row < rows; row++) {
+            lineConf += lineConflicts(tiles, rows, cols, row, true);
         }
+        for (int col = 0; col < cols; col++) {
+            lineConf += lineConflicts(tiles, rows, cols, col, false);
+        }
+        this.conflicts = lineConf;
     }
 
-    public int dimension() {   // board dimension N
-        return N;
+    // construct the neighbor of parent obtained by sliding the block at target into the blank
+    private Board(Board parent, int target) {
+        this.rows = parent.rows;
+        this.cols = parent.cols;
+        this.tiles = parent.tiles.clone();
+        int tile = parent.tileAt(target);
+        tiles[parent.blank] = (byte) tile;
+        tiles[target] = 0;
+        this.blank = target;
+
+        // only the moved tile changes position, so only its terms change
+        int outNum = parent.hamming;
+        if (target != tile - 1) outNum--;
+        if (parent.blank != tile - 1) outNum++;
+        this.hamming = outNum;
+        this.manhattan = parent.manhattan - distance(tile, target) + distance(tile, parent.blank);
+        this.zobrist = parent.zobrist ^ zobristKey(target, tile) ^ zobristKey(parent.blank, tile);
+
+        // a vertical move changes two rows, a horizontal move two columns
+        boolean vertical = Math.abs(target - parent.blank) == cols;
+        int from = vertical ? target / cols : target % cols;
+        int to = vertical ? parent.blank / cols : parent.blank % cols;
+        this.conflicts = parent.conflicts
+            - lineConflicts(parent.tiles, rows, cols, from, vertical)
+            - lineConflicts(parent.tiles, rows, cols, to, vertical)
+            + lineConflicts(tiles, rows, cols, from, vertical)
+            + lineConflicts(tiles, rows, cols, to, vertical);
     }
 
-    public int hamming() {  // number of blocks out of place
-        int outNum = 0;
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                int num = serialPos(i, j);
-                if ((tiles[i][j] != num) && (num < N*N)) {
-                    outNum++;
+    private static byte[] pack(int[][] blocks) {
+        int rows = blocks.length;
+        int cols = rows == 0 ? 0 : blocks[0].length;
+        byte[] packed = new byte[rows*cols];
+        for (int i = 0; i < rows; i++) {
+            if (blocks[i].length != cols) {
+                throw new IllegalArgumentException("rows of blocks differ in length");
+            }
+            for (int j = 0; j < cols; j++) {
+                if (blocks[i][j] < 0 || blocks[i][j] >= rows*cols) {   // would wrap in a byte
+                    throw new IllegalArgumentException("block " + blocks[i][j] + " is not between 0 and "
+                        + (rows*cols - 1));
                 }
+                packed[i*cols + j] = (byte) blocks[i][j];
             }
         }
-        return outNum;
+        return packed;
     }
 
-    // helper
-    private int serialPos(int x, int y) {  // return serial position from (x, y)
-        return x*N + y + 1;
+    // the goal board with the given number of rows and columns
+    static Board goal(int rows, int cols) {
+        byte[] tiles = new byte[rows*cols];
+        for (int i = 0; i < tiles.length - 1; i++) {
+            tiles[i] = (byte) (i + 1);
+        }
+        return new Board(tiles, rows, cols);
     }
 
-    private int getX(int serial) {   // get x (row) from serial position
-        return (serial - 1) / N;
-    } 
+    public int dimension() {   // board dimension N (number of rows)
+        return rows;
+    }
+
+    public int rows() {     // number of rows
+        return rows;
+    }
+
+    public int cols() {     // number of columns
+        return cols;
+    }
 
-    private int getY(int serial) {  // get y (column) from serial position
-        return (serial - 1) % N;
+    public int hamming() {  // number of blocks out of place
+        return hamming;
     }
 
     public int manhattan() {    // sum of Manhattan distances between blocks and goal
+        return manhattan;
+    }
+
+    // manhattan plus two moves for every linear conflict: a tile in its goal row
+    // (column) that must leave it to let the others in that line pass
+    public int linearConflict() {
+        return manhattan + 2*conflicts;
+    }
+
+    // sum of Manhattan distances between blocks and where[block], their
+    // positions on some other board of the same shape; O(rows*cols), not cached
+    int manhattan(int[] where) {
         int manDist = 0;
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                if (tiles[i][j] == 0) {   // blank
-                    continue;
-                }
-                manDist += Math.abs(i - getX(tiles[i][j])) + Math.abs(j - getY(tiles[i][j]));
-            }
+        for (int i = 0; i < tiles.length; i++) {
+            int tile = tileAt(i);
+            if (tile == 0) continue;
+            manDist += Math.abs(i / cols - where[tile] / cols) + Math.abs(i % cols - where[tile] % cols);
         }
         return manDist;
     }
 
-    public boolean isGoal() {    // is this board the goal board?
-        return hamming() == 0;
+    // helper
+    int tileAt(int pos) {   // unsigned tile value at row-major position
+        return tiles[pos] & 0xFF;
     }
 
-// a board that is obtained by exchanging two adjacent blocks in the same row
-    public Board twin() {   
-        int[][] twin = clone2Darray(this.tiles);
+    int blankPosition() {   // row-major position of the blank
+        return blank;
+    }
 
-        int i = zeroX;
-        int j = zeroY, oj;
-        if (i < N - 1) {    // down
-            i = zeroX + 1;
-        } else {
-            i = zeroX - 1;  // up
+    // the neighbor obtained by sliding the block at target (adjacent to the blank) into the blank
+    Board slide(int target) {
+        return new Board(this, target);
+    }
+
+    private int distance(int tile, int pos) {   // Manhattan distance of tile at pos from its goal
+        int goal = tile - 1;
+        return Math.abs(pos / cols - goal / cols) + Math.abs(pos % cols - goal % cols);
+    }
+
+    // number of tiles that must leave row (or column) line so the remaining tiles
+    // in their goal line are in goal order: the tiles in their goal line minus
+    // the longest increasing run of their goal positions. The patience-sort
+    // tails live in one long, 4 bits each, so this does not allocate.
+    static int lineConflicts(byte[] tiles, int rows, int cols, int line, boolean row) {
+        long tails = 0;
+        int len = 0;
+        int count = 0;
+        int length = row ? cols : rows;
+        for (int k = 0; k < length; k++) {
+            int tile = tiles[row ? line*cols + k : k*cols + line] & 0xFF;
+            if (tile == 0) continue;
+            int goal = tile - 1;
+            if ((row ? goal / cols : goal % cols) != line) continue;
+            int v = row ? goal % cols : goal / cols;
+            count++;
+            int i = 0;
+            while (i < len && ((tails >>> (4*i)) & 0xF) < v) {
+                i++;
+            }
+            tails = (tails & ~(0xFL << (4*i))) | ((long) v << (4*i));
+            if (i == len) len++;
         }
-        if (j < N - 1) {
-            oj = j + 1;     // right
-        } else {
-            oj = j - 1;     // left 
+        return count - len;
+    }
+
+    // pseudo-random key for tile at pos (SplitMix64 finalizer), so no key table is needed
+    private static long zobristKey(int pos, int tile) {
+        long z = (((long) pos << 8) | tile) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // 64-bit Zobrist hash of this board
+    long zobristHash() {
+        return zobrist;
+    }
+
+    public boolean isGoal() {    // is this board the goal board?
+        return hamming == 0;
+    }
+
+    // can this board reach the goal? The blank's taxicab distance from its goal
+    // corner must have the same parity as the permutation, since every slide
+    // is one transposition and moves the blank one step. O(N^2) by cycle count.
+    // A single row or column cannot reorder its tiles at all.
+    public boolean isSolvable() {
+        int size = rows*cols;
+        if (rows == 1 || cols == 1) {
+            for (int i = 0, last = 0; i < size; i++) {
+                if (tileAt(i) == 0) continue;
+                if (tileAt(i) < last) return false;
+                last = tileAt(i);
+            }
+            return true;
         }
-        swap(twin, i, j, i, oj);
-        return new Board(twin);
+        boolean[] seen = new boolean[size];
+        int cycles = 0;
+        for (int i = 0; i < size; i++) {
+            if (seen[i]) continue;
+            cycles++;
+            for (int j = i; !seen[j]; j = goalOf(tileAt(j))) {
+                seen[j] = true;
+            }
+        }
+        int permParity = (size - cycles) & 1;
+        int blankParity = (rows - 1 + cols - 1 - blank / cols - blank % cols) & 1;
+        return permParity == blankParity;
     }
 
-    private int[][] clone2Darray(int[][] src) {  // clone 2D array
-        int[][] target = new int[N][N];
-        for (int i = 0; i < N; i++) {
-            System.arraycopy(src[i], 0, target[i], 0, N);
+    private int goalOf(int tile) {  // goal position of tile, the blank goes last
+        return tile == 0 ? rows*cols - 1 : tile - 1;
+    }
+
+// a board that is obtained by exchanging two adjacent blocks in the same row
+    // (in the same column for a single-column board); a board with fewer than
+    // two blocks, 1 x 1, 1 x 2 or 2 x 1, has no twin
+    public Board twin() {
+        byte[] twin = tiles.clone();
+
+        int a, b;   // positions to exchange
+        if (rows == 1 || cols == 1) {   // the first two blocks of the only line
+            if (rows*cols < 3) throw new IllegalStateException("board has fewer than two blocks");
+            a = blank == 0 ? 1 : 0;
+            b = blank == a + 1 ? a + 2 : a + 1;
+        } else {
+            int i = blank / cols;
+            int j = blank % cols, oj;
+            if (i < rows - 1) {     // down
+                i = i + 1;
+            } else {
+                i = i - 1;  // up
+            }
+            if (j < cols - 1) {
+                oj = j + 1;     // right
+            } else {
+                oj = j - 1;     // left
+            }
+            a = i*cols + j;
+            b = i*cols + oj;
         }
-        return target;
+        byte temp = twin[a];
+        twin[a] = twin[b];
+        twin[b] = temp;
+        return new Board(twin, rows, cols);
     }
 
     public boolean equals(Object y) {   // does this board equal y?
@@ -107,55 +313,42 @@ public class Board {
         if (y == null) return false;
         if (y.getClass() != this.getClass()) return false;
         Board that = (Board) y;
-        if (this.dimension() != that.dimension()) return false;
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                if (this.tiles[i][j] != that.tiles[i][j]) return false;
-            }
-        }
-        return true;
+        if (this.rows != that.rows || this.cols != that.cols) return false;
+        if (this.zobrist != that.zobrist) return false;
+        return Arrays.equals(this.tiles, that.tiles);
+    }
+
+    public int hashCode() {
+        return (int) (zobrist ^ (zobrist >>> 32));
     }
 
     public Iterable<Board> neighbors() {    // all neighboring boards
         Queue<Board> boards = new Queue<Board>();
+        int zeroX = blank / cols;
+        int zeroY = blank % cols;
 
         if (zeroX > 0) {    // up
-            int[][] blocks = clone2Darray(this.tiles);
-            swap(blocks, zeroX, zeroY, zeroX - 1, zeroY);
-            boards.enqueue(new Board(blocks));
+            boards.enqueue(new Board(this, blank - cols));
         }
-        if (zeroX < N - 1) {    // down 
-            int[][] blocks = clone2Darray(this.tiles);
-            swap(blocks, zeroX, zeroY, zeroX + 1, zeroY);
-            boards.enqueue(new Board(blocks));
+        if (zeroX < rows - 1) {    // down
+            boards.enqueue(new Board(this, blank + cols));
         }
         if (zeroY > 0) {    // left
-            int[][] blocks = clone2Darray(this.tiles);
-            swap(blocks, zeroX, zeroY, zeroX, zeroY - 1);
-            boards.enqueue(new Board(blocks));
+            boards.enqueue(new Board(this, blank - 1));
         }
-        if (zeroY < N - 1) {    // right
-            int[][] blocks = clone2Darray(this.tiles);
-            swap(blocks, zeroX, zeroY, zeroX, zeroY + 1);
-            boards.enqueue(new Board(blocks));
+        if (zeroY < cols - 1) {    // right
+            boards.enqueue(new Board(this, blank + 1));
         }
 
         return boards;
     }
 
-    // swap 2D blocks between (x,y) and (i,j)
-    private void swap(int[][] blocks, int x, int y, int i, int j) {
-        int temp = blocks[x][y];
-        blocks[x][y] = blocks[i][j];
-        blocks[i][j] = temp;
-    }
-    
-    public String toString() {  // string representation of this board 
+    public String toString() {  // string representation of this board
         StringBuilder s = new StringBuilder();
-        s.append(N + "\n");
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                s.append(String.format("%2d ", tiles[i][j])); 
+        s.append(rows == cols ? rows + "\n" : rows + " " + cols + "\n");
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                s.append(String.format("%2d ", tileAt(i*cols + j)));
             }
             s.append("\n");
         }
@@ -173,14 +366,15 @@ public class Board {
                 blocks[i][j] = in.readInt();
             }
         }
-        
+
         Board initial = new Board(blocks);
         StdOut.println("---- initial board ----");
-        StdOut.println(initial + "hamming = " + initial.hamming() 
-            + ", manhattan : " + initial.manhattan() + "\n");
+        StdOut.println(initial + "hamming = " + initial.hamming()
+            + ", manhattan : " + initial.manhattan()
+            + ", linear conflict : " + initial.linearConflict() + "\n");
 
         StdOut.println("---- twin board ---- ");
-        StdOut.println(initial.twin() + "hamming = " + initial.twin().hamming() 
+        StdOut.println(initial.twin() + "hamming = " + initial.twin().hamming()
             + ", manhattan : " + initial.twin().manhattan() + "\n");
 
         StdOut.println("---- neighboring boards ---- ");
@@ -188,4 +382,4 @@ public class Board {
             StdOut.println(bd + "hamming = " + bd.hamming() + ", manhattan = " + bd.manhattan() + "\n");
         }
     }
-}
\ No newline at end of file
+}
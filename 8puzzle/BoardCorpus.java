@@ -0,0 +1,256 @@
+/*************************************************************************
+ *  Compilation:  javac BoardCorpus.java
+ *  Execution:    java BoardCorpus puzzles.txt corpus.bin
+ *
+ *  A binary file of boards, memory-mapped for reading. Converting a text
+ *  puzzle file once (main) lets later runs skip parsing: board(i) copies
+ *  rows*cols bytes straight out of the page cache.
+ *
+ *  Layout, all big-endian:
+ *    int MAGIC
+ *    the boards, one record of rows*cols unsigned bytes each, row-major
+ *    section table, one entry per run of boards of the same shape:
+ *        int rows, int cols, int count, long offset of the first record
+ *    int number of sections
+ *    long offset of the section table
+ *
+ *  The table sits at the end so write() can stream boards in one pass.
+ *  It writes to a temporary file next to the target and renames it only
+ *  once the table is written, so a failed write leaves no half a corpus.
+ *  A record that does not make a board is reported and skipped, as in
+ *  BatchSolver.
+ *  The whole file is mapped as one buffer, so it must be under 2GB.
+ *
+ *************************************************************************/
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class BoardCorpus implements Iterable<Board> {
+    private static final int MAGIC = 0x42524431;    // "BRD1"
+    private static final int TRAILER = 12;          // section count and table offset
+
+    private final ByteBuffer data;  // the mapped file
+    private final int[] first;      // index of the first board of each section, plus size at the end
+    private final int[] rows;       // rows of the boards in each section
+    private final int[] cols;       // columns of the boards in each section
+    private final int[] offset;     // file offset of the first record of each section
+
+    private BoardCorpus(ByteBuffer data, int[] first, int[] rows, int[] cols, int[] offset) {
+        this.data = data;
+        this.first = first;
+        this.rows = rows;
+        this.cols = cols;
+        this.offset = offset;
+    }
+
+    // memory-map a corpus written by write()
+    public static BoardCorpus open(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(filename + " is too large to map");
+            }
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.capacity() < 4 + TRAILER || data.getInt(0) != MAGIC) {
+                throw new IOException(filename + " is not a board corpus");
+            }
+            int sections = data.getInt(data.capacity() - TRAILER);
+            long table = data.getLong(data.capacity() - TRAILER + 4);
+            if (sections < 0 || table < 4 || table + 20L*sections != data.capacity() - TRAILER) {
+                throw new IOException(filename + " has a corrupt section table");
+            }
+
+            int[] first = new int[sections + 1];
+            int[] rows = new int[sections];
+            int[] cols = new int[sections];
+            int[] offset = new int[sections];
+            data.position((int) table);
+            for (int s = 0; s < sections; s++) {
+                rows[s] = data.getInt();
+                cols[s] = data.getInt();
+                int count = data.getInt();
+                long start = data.getLong();
+                if (rows[s] < 1 || cols[s] < 1 || count < 0 || start < 4
+                    || start + (long) count * rows[s] * cols[s] > table) {
+                    throw new IOException(filename + " has a corrupt section table");
+                }
+                offset[s] = (int) start;
+                first[s + 1] = first[s] + count;
+            }
+            return new BoardCorpus(data, first, rows, cols, offset);
+        } finally {
+            file.close();   // the mapping stays valid after the channel is closed
+        }
+    }
+
+    // does the file start with the corpus magic number?
+    public static boolean isCorpus(String filename) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(filename));
+        try {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {   // shorter than the magic number
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    public int size() {     // number of boards
+        return first[first.length - 1];
+    }
+
+    public int rows(int i) {    // rows of board i
+        return rows[section(i)];
+    }
+
+    public int cols(int i) {    // columns of board i
+        return cols[section(i)];
+    }
+
+    // board i, from 0
+    public Board board(int i) {
+        int s = section(i);
+        byte[] tiles = new byte[rows[s] * cols[s]];
+        copy(s, i, tiles);
+        return new Board(tiles, rows[s], cols[s]);
+    }
+
+    // copy the row-major tiles of board i into dst without allocating;
+    // returns the number of tiles copied
+    public int copyTiles(int i, byte[] dst) {
+        int s = section(i);
+        copy(s, i, dst);
+        return rows[s] * cols[s];
+    }
+
+    private void copy(int s, int i, byte[] dst) {
+        int size = rows[s] * cols[s];
+        if (dst.length < size) throw new IllegalArgumentException("dst holds fewer than " + size + " tiles");
+        ByteBuffer view = data.duplicate();     // own position, so readers can share the corpus
+        view.position(offset[s] + (i - first[s]) * size);
+        view.get(dst, 0, size);
+    }
+
+    // the section holding board i, by binary search over the section starts
+    private int section(int i) {
+        if (i < 0 || i >= size()) throw new IndexOutOfBoundsException("board " + i + " of " + size());
+        int lo = 0, hi = rows.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (first[mid] <= i) lo = mid;
+            else                 hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // the boards in order
+    public Iterator<Board> iterator() {
+        return new Iterator<Board>() {
+            private int i = 0;
+
+            public boolean hasNext() {
+                return i < size();
+            }
+
+            public Board next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return board(i++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    // write boards to filename in corpus format; returns the number written.
+    // A board the iterator throws on is reported on standard error and skipped.
+    public static int write(String filename, Iterable<Board> boards) throws IOException {
+        File target = new File(filename).getAbsoluteFile();
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+        boolean done = false;
+        try {
+            int total = write(temp, boards);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            done = true;
+            return total;
+        } finally {
+            if (!done) temp.delete();
+        }
+    }
+
+    private static int write(File file, Iterable<Board> boards) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            long position = 4;
+            int total = 0;
+
+            // one section per run of same-shaped boards, recorded as we go
+            int sections = 0;
+            int[] table = new int[3*4];         // rows, cols, count per section
+            long[] starts = new long[4];        // offset of each section
+            Iterator<Board> it = boards.iterator();
+            for (int index = 0; it.hasNext(); index++) {
+                Board board;
+                try {
+                    board = it.next();
+                } catch (RuntimeException e) {  // a bad record; the ones after it may be fine
+                    System.err.println("record " + index + " skipped: " + e);
+                    continue;
+                }
+                int r = board.rows(), c = board.cols();
+                if (sections == 0 || table[3*(sections-1)] != r || table[3*(sections-1) + 1] != c) {
+                    if (sections == starts.length) {
+                        table = Arrays.copyOf(table, 6*sections);
+                        starts = Arrays.copyOf(starts, 2*sections);
+                    }
+                    table[3*sections] = r;
+                    table[3*sections + 1] = c;
+                    starts[sections] = position;
+                    sections++;
+                }
+                for (int i = 0; i < r*c; i++) {
+                    out.writeByte(board.tileAt(i));
+                }
+                table[3*(sections-1) + 2]++;
+                position += r*c;
+                total++;
+            }
+
+            for (int s = 0; s < sections; s++) {
+                out.writeInt(table[3*s]);
+                out.writeInt(table[3*s + 1]);
+                out.writeInt(table[3*s + 2]);
+                out.writeLong(starts[s]);
+            }
+            out.writeInt(sections);
+            out.writeLong(position);
+            return total;
+        } finally {
+            out.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {   // convert a text puzzle file
+        Stopwatch timer = new Stopwatch();
+        int count = write(args[1], BatchSolver.readBoards(new In(args[0])));
+        StdOut.println(count + " boards written to " + args[1] + " in " + timer.elapsedTime() + "s");
+    }
+}
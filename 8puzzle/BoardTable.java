@@ -0,0 +1,137 @@
+/*************************************************************************
+ *  Compilation:  javac BoardTable.java
+ *  Execution:    java BoardTable [T]
+ *
+ *  A hash table from Board to a value, using open addressing with linear
+ *  probing on the board's 64-bit Zobrist hash. Hashes are kept in a
+ *  primitive long[] so a probe only calls equals() when the full 64-bit
+ *  hash matches.
+ *
+ *  main() puts the boards of a T-step random walk (default 200000) on
+ *  3x3 and 4x4 boards into a BoardTable and a java.util.HashMap, and
+ *  checks that both hold the same values for every board seen.
+ *
+ *************************************************************************/
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class BoardTable<Value> {
+    private static final int INIT_CAPACITY = 16;
+
+    private long[] hashes;      // Zobrist hash of the board in each slot
+    private Board[] boards;     // boards, null for an empty slot
+    private Value[] vals;       // values
+    private int N;              // number of key-value pairs
+    private int M;              // size of the table, a power of 2
+
+    public BoardTable() {
+        this(INIT_CAPACITY);
+    }
+
+    public BoardTable(int capacity) {
+        M = INIT_CAPACITY;
+        while (M < 2 * capacity) {
+            M <<= 1;
+        }
+        hashes = new long[M];
+        boards = new Board[M];
+        vals = (Value[]) new Object[M];
+    }
+
+    public int size() {     // number of boards in the table
+        return N;
+    }
+
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    public boolean contains(Board board) {
+        return get(board) != null;
+    }
+
+    // value associated with board, null if none
+    public Value get(Board board) {
+        if (board == null) throw new NullPointerException();
+        long h = board.zobristHash();
+        for (int i = slot(h); boards[i] != null; i = (i + 1) & (M - 1)) {
+            if (hashes[i] == h && boards[i].equals(board)) {
+                return vals[i];
+            }
+        }
+        return null;
+    }
+
+    // associate val with board, replacing any previous value
+    public void put(Board board, Value val) {
+        if (board == null || val == null) throw new NullPointerException();
+        if (N >= M / 2) resize(2 * M);
+
+        long h = board.zobristHash();
+        int i;
+        for (i = slot(h); boards[i] != null; i = (i + 1) & (M - 1)) {
+            if (hashes[i] == h && boards[i].equals(board)) {
+                vals[i] = val;
+                return;
+            }
+        }
+        hashes[i] = h;
+        boards[i] = board;
+        vals[i] = val;
+        N++;
+    }
+
+    private int slot(long h) {
+        return (int) (h ^ (h >>> 32)) & (M - 1);
+    }
+
+    private void resize(int capacity) {
+        long[] oldHashes = hashes;
+        Board[] oldBoards = boards;
+        Value[] oldVals = vals;
+        M = capacity;
+        hashes = new long[M];
+        boards = new Board[M];
+        vals = (Value[]) new Object[M];
+        for (int j = 0; j < oldBoards.length; j++) {
+            if (oldBoards[j] == null) continue;
+            int i = slot(oldHashes[j]);
+            while (boards[i] != null) {
+                i = (i + 1) & (M - 1);
+            }
+            hashes[i] = oldHashes[j];
+            boards[i] = oldBoards[j];
+            vals[i] = oldVals[j];
+        }
+    }
+
+    public static void main(String[] args) {
+        int T = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        for (int N = 3; N <= 4; N++) {
+            BoardTable<Integer> table = new BoardTable<Integer>();
+            HashMap<Board, Integer> map = new HashMap<Board, Integer>();
+            Board board = Board.goal(N, N);
+            for (int t = 0; t < T; t++) {   // revisits overwrite the value
+                table.put(board, t);
+                map.put(board, t);
+                Board next = board;
+                int k = StdRandom.uniform(4);
+                for (Board nb : board.neighbors()) {    // the k-th neighbour, or the last
+                    next = nb;
+                    if (k-- == 0) break;
+                }
+                board = next;
+            }
+            if (table.size() != map.size()) {
+                throw new RuntimeException(N + "x" + N + ": size " + table.size() + ", expected " + map.size());
+            }
+            for (Map.Entry<Board, Integer> e : map.entrySet()) {
+                if (!e.getValue().equals(table.get(e.getKey()))) {
+                    throw new RuntimeException(N + "x" + N + ": wrong value for\n" + e.getKey());
+                }
+            }
+            StdOut.println(N + "x" + N + ": " + map.size() + " distinct boards agree with HashMap");
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*************************************************************************
+ *  Compilation:  javac BucketQueue.java
+ *  Execution:    java BucketQueue [T]
+ *
+ *  A minimum priority queue for small non-negative integer priorities.
+ *  Items live in an array of buckets, one per priority, each a resizing
+ *  array used as a stack. insert and delMin are O(1) amortized: delMin
+ *  only scans forward from the lowest bucket that may be non-empty,
+ *  and insert moves that bucket back down if needed.
+ *
+ *  Within a bucket the most recently inserted item comes out first.
+ *
+ *  main() runs T random inserts and deletes (default 1000000) against
+ *  MinPQ and checks that both give the same priorities in the same order.
+ *
+ *************************************************************************/
+
+import java.util.NoSuchElementException;
+
+public class BucketQueue<Item> {
+    private Item[][] buckets;   // buckets[p] = items with priority p
+    private int[] counts;       // counts[p] = number of items in buckets[p]
+    private int N;              // number of items
+    private int minBucket;      // no item has priority below minBucket
+
+    public BucketQueue() {
+        buckets = (Item[][]) new Object[64][];
+        counts = new int[64];
+    }
+
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    public int size() {
+        return N;
+    }
+
+    // add item with priority p >= 0
+    public void insert(int p, Item item) {
+        if (p < 0) throw new IllegalArgumentException("negative priority " + p);
+        if (p >= buckets.length) {
+            int capacity = buckets.length;
+            while (capacity <= p) capacity *= 2;
+            Item[][] temp = (Item[][]) new Object[capacity][];
+            System.arraycopy(buckets, 0, temp, 0, buckets.length);
+            buckets = temp;
+            int[] tempCounts = new int[capacity];
+            System.arraycopy(counts, 0, tempCounts, 0, counts.length);
+            counts = tempCounts;
+        }
+        Item[] bucket = buckets[p];
+        if (bucket == null) {
+            bucket = (Item[]) new Object[16];
+            buckets[p] = bucket;
+        } else if (counts[p] == bucket.length) {
+            Item[] temp = (Item[]) new Object[2 * bucket.length];
+            System.arraycopy(bucket, 0, temp, 0, bucket.length);
+            bucket = temp;
+            buckets[p] = bucket;
+        }
+        bucket[counts[p]++] = item;
+        N++;
+        if (p < minBucket) minBucket = p;
+    }
+
+    // an item with the smallest priority, the last inserted among equals
+    public Item min() {
+        if (isEmpty()) throw new NoSuchElementException("Priority queue underflow");
+        while (counts[minBucket] == 0) minBucket++;
+        return buckets[minBucket][counts[minBucket] - 1];
+    }
+
+    // remove and return min()
+    public Item delMin() {
+        Item item = min();
+        buckets[minBucket][--counts[minBucket]] = null;  // avoid loitering
+        N--;
+        return item;
+    }
+
+    public static void main(String[] args) {
+        int T = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        BucketQueue<Integer> bq = new BucketQueue<Integer>();
+        MinPQ<Integer> pq = new MinPQ<Integer>();
+        for (int t = 0; t < T || !pq.isEmpty(); t++) {
+            if (t < T && (pq.isEmpty() || StdRandom.uniform(3) > 0)) {    // insert twice as often
+                int p = StdRandom.uniform(200);
+                bq.insert(p, p);
+                pq.insert(p);
+            } else {
+                int expected = pq.delMin();
+                int p = bq.delMin();
+                if (p != expected) {
+                    throw new RuntimeException("step " + t + ": delMin() = " + p + ", expected " + expected);
+                }
+            }
+            if (bq.size() != pq.size()) throw new RuntimeException("step " + t + ": sizes differ");
+        }
+
+        // equal priorities come out last in, first out
+        bq.insert(5, 1);
+        bq.insert(5, 2);
+        bq.insert(7, 3);
+        bq.insert(5, 4);
+        String order = bq.delMin() + " " + bq.delMin() + " " + bq.delMin() + " " + bq.delMin();
+        if (!order.equals("4 2 1 3")) throw new RuntimeException("ties came out as " + order);
+        StdOut.println(T + " operations agree with MinPQ");
+    }
+}
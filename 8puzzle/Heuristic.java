@@ -0,0 +1,35 @@
+/*************************************************************************
+ *  Compilation:  javac Heuristic.java
+ *
+ *  A lower bound on the number of moves from a board to the goal, used
+ *  by Solver to order its search. Implementations must be admissible
+ *  (never overestimate). Consistent ones (changing by at most 1 per move)
+ *  also never make Solver reopen a board.
+ *
+ *************************************************************************/
+
+public interface Heuristic {
+    // sum of Manhattan distances between blocks and goal
+    Heuristic MANHATTAN = new Heuristic() {
+        public int estimate(Board board) {
+            return board.manhattan();
+        }
+    };
+
+    // number of blocks out of place
+    Heuristic HAMMING = new Heuristic() {
+        public int estimate(Board board) {
+            return board.hamming();
+        }
+    };
+
+    // manhattan plus linear conflicts
+    Heuristic LINEAR_CONFLICT = new Heuristic() {
+        public int estimate(Board board) {
+            return board.linearConflict();
+        }
+    };
+
+    // lower bound on the number of moves to solve board
+    int estimate(Board board);
+}
@@ -0,0 +1,252 @@
+/*************************************************************************
+ *  Compilation:  javac IDAStar.java
+ *  Execution:    java IDAStar [T]
+ *
+ *  Iterative-deepening A* over a single mutable copy of a Board.
+ *
+ *  Each iteration is a depth-first search bounded by moves + manhattan,
+ *  optionally plus linear conflicts. Moves are made and unmade in place on
+ *  one byte[]; manhattan is updated by the moved tile's delta and linear
+ *  conflicts by re-counting the two lines the move touches. The only other state is
+ *  two int arrays indexed by depth, so memory stays proportional to the
+ *  solution length no matter how many nodes are expanded.
+ *
+ *  The board must be solvable: iterate() would never find the goal of an
+ *  unsolvable one, so the constructor rejects it.
+ *
+ *  main() scrambles T boards (default 200) of 3x3, 3x4 and 4x4 by random
+ *  walks from the goal, solves each with and without linear conflicts,
+ *  and checks the move count against Solver's A* and that the solution
+ *  is a chain of single moves from the board to the goal.
+ *
+ *************************************************************************/
+
+public class IDAStar {
+    private static final int FOUND = -1;
+
+    private final Board initial;
+    private final int rows;         // board rows
+    private final int cols;         // board columns
+    private final byte[] tiles;     // working board, mutated in place
+    private int blank;              // blank position in tiles
+    private final boolean linear;   // add linear conflicts to the estimate?
+    private int h;                  // manhattan distance (plus linear conflicts) of tiles
+
+    private int[] blanks;           // blanks[d] = blank position at depth d
+    private int[] dirs;             // dirs[d] = next direction to try at depth d
+    private long maxNodes = Long.MAX_VALUE;         // most nodes to expand
+    private long startNanos;                        // System.nanoTime() when the search began
+    private long timeoutNanos = Long.MAX_VALUE;     // longest time to search
+    private SearchStats stats = new SearchStats();  // counters over all iterations
+    private int bound;              // current cost threshold
+    private int moves = -1;         // solution length once found
+
+    public IDAStar(Board initial) {
+        this(initial, false);
+    }
+
+    // search with manhattan plus linear conflicts if linear is true
+    public IDAStar(Board initial, boolean linear) {
+        if (!initial.isSolvable()) {
+            throw new IllegalArgumentException("IDA* needs a solvable board");
+        }
+        this.initial = initial;
+        this.linear = linear;
+        this.rows = initial.rows();
+        this.cols = initial.cols();
+        this.tiles = new byte[rows*cols];
+        for (int i = 0; i < rows*cols; i++) {
+            tiles[i] = (byte) initial.tileAt(i);
+        }
+        this.blank = initial.blankPosition();
+        this.h = linear ? initial.linearConflict() : initial.manhattan();
+        this.bound = h;
+        this.blanks = new int[Math.max(h, 1) + 1];
+        this.dirs = new int[blanks.length];
+    }
+
+    // throw Solver.LimitExceededException after maxNodes expansions or timeoutNanos from startNanos
+    public void setLimits(long maxNodes, long startNanos, long timeoutNanos) {
+        this.maxNodes = maxNodes;
+        this.startNanos = startNanos;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    // count into stats instead of a private SearchStats
+    public void setStats(SearchStats stats) {
+        this.stats = stats;
+    }
+
+    public int bound() {    // threshold of the next iteration
+        return bound;
+    }
+
+    public int moves() {    // length of the solution; -1 if not found yet
+        return moves;
+    }
+
+    // run one depth-first pass with the current bound; true if the goal was found
+    public boolean iterate() {
+        if (moves >= 0) return true;
+        if (h == 0) {
+            moves = 0;
+            blanks[0] = blank;
+            return true;
+        }
+        if (blanks.length <= bound) {
+            blanks = new int[bound + 1];
+            dirs = new int[bound + 1];
+        }
+
+        int next = search();
+        if (next == FOUND) return true;
+        bound = next;
+        return false;
+    }
+
+    // depth-first search up to bound; FOUND, or the smallest cost that exceeded bound
+    private int search() {
+        int min = Integer.MAX_VALUE;
+        int depth = 0;
+        blanks[0] = blank;
+        dirs[0] = 0;
+
+        while (true) {
+            if (dirs[depth] == 4) {     // all moves at this depth tried
+                if (depth == 0) return min;
+                depth--;
+                move(blanks[depth]);   // unmake
+                continue;
+            }
+            int target = target(dirs[depth]++);
+            if (target < 0 || (depth > 0 && target == blanks[depth - 1])) {
+                continue;   // off the board, or undoing the previous move
+            }
+
+            move(target);  // make
+            stats.generated++;
+            int f = depth + 1 + h;
+            if (f > bound) {
+                if (f < min) min = f;
+                move(blanks[depth]);
+                continue;
+            }
+            depth++;
+            blanks[depth] = blank;
+            if (h == 0) {
+                moves = depth;
+                return FOUND;
+            }
+            dirs[depth] = 0;
+            stats.openSize(depth);
+            countExpansion();
+        }
+    }
+
+    private void countExpansion() {
+        long expanded = ++stats.expanded;
+        if (expanded > maxNodes) {
+            throw new Solver.LimitExceededException(false);
+        }
+        if ((expanded & 0xFFF) == 0 && System.nanoTime() - startNanos > timeoutNanos) {
+            throw new Solver.LimitExceededException(true);
+        }
+    }
+
+    // position the blank moves to in direction dir (up, down, left, right); -1 if off the board
+    private int target(int dir) {
+        switch (dir) {
+            case 0:  return blank >= cols ? blank - cols : -1;
+            case 1:  return blank < rows*cols - cols ? blank + cols : -1;
+            case 2:  return blank % cols > 0 ? blank - 1 : -1;
+            default: return blank % cols < cols - 1 ? blank + 1 : -1;
+        }
+    }
+
+    // make or unmake a move, timed as successor generation if SearchStats.TIMING
+    private void move(int target) {
+        if (!SearchStats.TIMING) {
+            slide(target);
+            return;
+        }
+        long start = System.nanoTime();
+        slide(target);
+        stats.successorNanos += System.nanoTime() - start;
+    }
+
+    // slide the tile at target into the blank, updating the estimate
+    private void slide(int target) {
+        int tile = tiles[target] & 0xFF;
+        h += distance(tile, blank) - distance(tile, target);
+        if (linear) {
+            boolean vertical = Math.abs(target - blank) == cols;
+            int from = vertical ? target / cols : target % cols;
+            int to = vertical ? blank / cols : blank % cols;
+            h -= 2 * (Board.lineConflicts(tiles, rows, cols, from, vertical)
+                + Board.lineConflicts(tiles, rows, cols, to, vertical));
+            tiles[blank] = (byte) tile;
+            tiles[target] = 0;
+            h += 2 * (Board.lineConflicts(tiles, rows, cols, from, vertical)
+                + Board.lineConflicts(tiles, rows, cols, to, vertical));
+        } else {
+            tiles[blank] = (byte) tile;
+            tiles[target] = 0;
+        }
+        blank = target;
+    }
+
+    private int distance(int tile, int pos) {   // Manhattan distance of tile at pos from its goal
+        int goal = tile - 1;
+        return Math.abs(pos / cols - goal / cols) + Math.abs(pos % cols - goal % cols);
+    }
+
+    // sequence of boards from initial to goal; null if not found yet
+    public Board[] solution() {
+        if (moves < 0) return null;
+        Board[] path = new Board[moves + 1];
+        path[0] = initial;
+        for (int d = 1; d <= moves; d++) {
+            path[d] = path[d - 1].slide(blanks[d]);
+        }
+        return path;
+    }
+
+    public static void main(String[] args) {
+        int T = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[][] shapes = { {3, 3}, {3, 4}, {4, 4} };
+        for (int t = 0; t < T; t++) {
+            int[] shape = shapes[t % shapes.length];
+            Board board = Board.goal(shape[0], shape[1]);
+            int steps = shape[0]*shape[1] > 12 ? 40 : 80;   // keep 4x4 searches short
+            for (int s = 0; s < steps; s++) {
+                Board next = board;
+                int k = StdRandom.uniform(4);
+                for (Board nb : board.neighbors()) {    // the k-th neighbour, or the last
+                    next = nb;
+                    if (k-- == 0) break;
+                }
+                board = next;
+            }
+
+            int expected = new Solver(board).moves();
+            for (int linear = 0; linear < 2; linear++) {
+                IDAStar search = new IDAStar(board, linear == 1);
+                while (!search.iterate()) { }
+                Board[] path = search.solution();
+                if (search.moves() != expected || path.length != expected + 1
+                    || !path[0].equals(board) || !path[expected].isGoal()) {
+                    throw new RuntimeException("board " + t + ", linear = " + (linear == 1)
+                        + ": " + search.moves() + " moves, expected " + expected + "\n" + board);
+                }
+                for (int d = 1; d <= expected; d++) {
+                    boolean adjacent = false;
+                    for (Board nb : path[d - 1].neighbors()) {
+                        if (nb.equals(path[d])) adjacent = true;
+                    }
+                    if (!adjacent) throw new RuntimeException("board " + t + ": step " + d + " is not a move");
+                }
+            }
+        }
+        StdOut.println(T + " boards agree with A*");
+    }
+}
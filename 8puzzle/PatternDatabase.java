@@ -0,0 +1,359 @@
+/*************************************************************************
+ *  Compilation:  javac PatternDatabase.java
+ *  Execution:    java PatternDatabase N pdb.dat [group ...]
+ *                e.g. java PatternDatabase 4 pdb4.dat 1,5,6,9,10,13 7,8,11,12,14,15 2,3,4
+ *
+ *  Additive pattern database heuristic. The tiles are split into disjoint
+ *  groups. For each group a table holds the exact number of moves of that
+ *  group's tiles needed to bring them home, ignoring the identity of the
+ *  other tiles, whose moves cost nothing. Every move moves one tile, so
+ *  the per-group values can be added and the sum stays admissible. Taking
+ *  the minimum over blank positions makes it inconsistent in places, which
+ *  Solver handles by reopening boards.
+ *
+ *  A group's table is built by a 0-1 breadth-first search over (group
+ *  tile positions, blank position) from the goal. It is indexed by the
+ *  rank of the group's positions as a partial permutation of the N*N
+ *  cells, and holds one unsigned byte per entry. The search itself ranks
+ *  the group plus the blank, and that rank must fit in an int, so a group
+ *  has at most 7 tiles on 4x4 (16!/8! search states, one byte each); an
+ *  8-tile group, as in a 7-8 partition, would need 16!/7!, over 4 billion,
+ *  and is rejected. The 4x4 default is 6-6-3. save() writes all tables
+ *  to one file, and load() memory-maps that file so lookups read straight
+ *  from the page cache with no parsing.
+ *
+ *  estimate() works out each group's rank in one scan of the board, from
+ *  lookup tables fixed at construction, so it allocates nothing and one
+ *  database can be shared by many solver threads.
+ *
+ *************************************************************************/
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class PatternDatabase implements Heuristic {
+    private static final int MAGIC = 0x50444231;    // "PDB1"
+    private static final int UNSEEN = 0xFF;
+
+    private final int N;                // board dimension
+    private final int[][] groups;       // tiles of each group
+    private final ByteBuffer[] tables;  // distance table of each group
+    private final int[] groupOf;        // group of each tile, -1 if none
+    private final int[] indexOf;        // index of each tile within its group
+    private final int[][] weights;      // place value of each group index in the group's rank
+
+    // build the tables for the given disjoint groups of tiles on an N-by-N board
+    public PatternDatabase(int N, int[][] groups) {
+        this(N, groups, new ByteBuffer[groups.length]);
+        for (int g = 0; g < groups.length; g++) {
+            tables[g] = ByteBuffer.wrap(build(groups[g]));
+        }
+    }
+
+    private PatternDatabase(int N, int[][] groups, ByteBuffer[] tables) {
+        this.N = N;
+        this.groups = groups;
+        this.tables = tables;
+        groupOf = new int[N*N];
+        indexOf = new int[N*N];
+        weights = new int[groups.length][];
+        Arrays.fill(groupOf, -1);
+        for (int g = 0; g < groups.length; g++) {
+            int[] group = groups[g];
+            weights[g] = new int[group.length];
+            int weight = 1;
+            for (int i = group.length - 1; i >= 0; i--) {
+                int tile = group[i];
+                if (tile < 1 || tile >= N*N || groupOf[tile] >= 0) {
+                    throw new IllegalArgumentException("groups must be disjoint sets of tiles 1 ~ N*N - 1");
+                }
+                groupOf[tile] = g;
+                indexOf[tile] = i;
+                weights[g][i] = weight;
+                weight *= N*N - i;
+            }
+        }
+    }
+
+    // a database with the default partition: 4-4 for 3x3, 6-6-3 for 4x4
+    public static PatternDatabase defaultFor(int N) {
+        if (N == 3) {
+            return new PatternDatabase(3, new int[][] { {1, 2, 3, 4}, {5, 6, 7, 8} });
+        } else if (N == 4) {
+            return new PatternDatabase(4, new int[][] {
+                {1, 5, 6, 9, 10, 13}, {7, 8, 11, 12, 14, 15}, {2, 3, 4} });
+        }
+        throw new IllegalArgumentException("no default partition for N = " + N);
+    }
+
+    public int dimension() {
+        return N;
+    }
+
+    // sum of the group distances of board
+    public int estimate(Board board) {
+        if (board.rows() != N || board.cols() != N) {
+            throw new IllegalArgumentException("board " + board.rows() + " x " + board.cols()
+                + " does not match pattern database dimension " + N);
+        }
+        int sum = 0;
+        for (int g = 0; g < groups.length; g++) {
+            // the same digits as rank(), found in position order: a tile's digit
+            // is its position less the lower-indexed group tiles seen before it
+            int all = (1 << groups[g].length) - 1;
+            int seen = 0;   // bit i is set once the tile at group index i is found
+            int r = 0;
+            for (int pos = 0; seen != all; pos++) {
+                int tile = board.tileAt(pos);
+                if (groupOf[tile] != g) continue;
+                int i = indexOf[tile];
+                r += (pos - Integer.bitCount(seen & ((1 << i) - 1))) * weights[g][i];
+                seen |= 1 << i;
+            }
+            sum += tables[g].get(r) & 0xFF;
+        }
+        return sum;
+    }
+
+    // 0-1 BFS from the goal over (group positions, blank position); returns the
+    // group table, the minimum over blank positions of each state's distance
+    private byte[] build(int[] group) {
+        int cells = N*N;
+        int k = group.length;
+        int blanks = cells - k;
+        long states = permutations(cells, k + 1);
+        if (states > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("pattern group of " + k + " tiles is too large: "
+                + "its search over the group and the blank has " + states + " states, more than an int can index");
+        }
+        byte[] dist = new byte[(int) states];
+        Arrays.fill(dist, (byte) UNSEEN);
+
+        int[] pos = new int[k + 1];     // group tile positions, then the blank
+        int[] occupant = new int[cells];  // occupant[cell] = group index, or -1
+        Arrays.fill(occupant, -1);
+        for (int i = 0; i < k; i++) {
+            pos[i] = group[i] - 1;
+        }
+        pos[k] = cells - 1;
+
+        IntStack frontier = new IntStack();     // reached by a group tile move
+        IntStack closure = new IntStack();      // reached by free blank moves
+        frontier.push(rank(pos, k + 1));
+        for (int d = 0; !frontier.isEmpty(); d++) {
+            IntStack next = new IntStack();
+            while (!frontier.isEmpty()) {
+                int s = frontier.pop();
+                if ((dist[s] & 0xFF) != UNSEEN) continue;
+                dist[s] = (byte) d;
+                closure.push(s);
+            }
+            while (!closure.isEmpty()) {
+                unrank(closure.pop(), pos, k + 1);
+                for (int i = 0; i < k; i++) {
+                    occupant[pos[i]] = i;
+                }
+                int b = pos[k];
+                for (int dir = 0; dir < 4; dir++) {
+                    int c = step(b, dir);
+                    if (c < 0) continue;
+                    int j = occupant[c];
+                    pos[k] = c;
+                    if (j < 0) {    // free move, same distance
+                        int t = rank(pos, k + 1);
+                        if ((dist[t] & 0xFF) == UNSEEN) {
+                            dist[t] = (byte) d;
+                            closure.push(t);
+                        }
+                    } else {        // group tile j slides into the blank
+                        pos[j] = b;
+                        int t = rank(pos, k + 1);
+                        if ((dist[t] & 0xFF) == UNSEEN) {
+                            next.push(t);
+                        }
+                        pos[j] = c;
+                    }
+                    pos[k] = b;
+                }
+                for (int i = 0; i < k; i++) {
+                    occupant[pos[i]] = -1;
+                }
+            }
+            frontier = next;
+        }
+
+        // the blank is the last digit of the rank, so s / blanks is the group rank
+        byte[] table = new byte[dist.length / blanks];
+        Arrays.fill(table, (byte) UNSEEN);
+        for (int s = 0; s < dist.length; s++) {
+            int v = dist[s] & 0xFF;
+            if (v < (table[s / blanks] & 0xFF)) {
+                table[s / blanks] = (byte) v;
+            }
+        }
+        return table;
+    }
+
+    // neighbor of cell in direction dir (up, down, left, right); -1 if off the board
+    private int step(int cell, int dir) {
+        switch (dir) {
+            case 0:  return cell >= N ? cell - N : -1;
+            case 1:  return cell < N*N - N ? cell + N : -1;
+            case 2:  return cell % N > 0 ? cell - 1 : -1;
+            default: return cell % N < N - 1 ? cell + 1 : -1;
+        }
+    }
+
+    // number of ways to place k distinct items in n cells
+    private static long permutations(int n, int k) {
+        long count = 1;
+        for (int i = 0; i < k; i++) {
+            count *= n - i;
+        }
+        return count;
+    }
+
+    // mixed-radix rank of the first len positions as a partial permutation of the cells
+    private int rank(int[] pos, int len) {
+        int cells = N*N;
+        int r = 0;
+        for (int i = 0; i < len; i++) {
+            int digit = pos[i];
+            for (int j = 0; j < i; j++) {
+                if (pos[j] < pos[i]) digit--;
+            }
+            r = r * (cells - i) + digit;
+        }
+        return r;
+    }
+
+    // inverse of rank
+    private void unrank(int r, int[] pos, int len) {
+        int cells = N*N;
+        for (int i = len - 1; i >= 0; i--) {
+            pos[i] = r % (cells - i);
+            r /= cells - i;
+        }
+        // turn each digit (index among unused cells) back into a cell
+        for (int i = 1; i < len; i++) {
+            int p = pos[i];
+            boolean moved = true;
+            while (moved) {
+                moved = false;
+                int below = 0;
+                for (int j = 0; j < i; j++) {
+                    if (pos[j] <= p) below++;
+                }
+                if (pos[i] + below != p) {
+                    p = pos[i] + below;
+                    moved = true;
+                }
+            }
+            pos[i] = p;
+        }
+    }
+
+    // write all tables to filename
+    public void save(String filename) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(filename)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(N);
+            out.writeInt(groups.length);
+            for (int[] group : groups) {
+                out.writeInt(group.length);
+                for (int tile : group) {
+                    out.writeInt(tile);
+                }
+            }
+            for (ByteBuffer table : tables) {
+                for (int i = 0; i < table.capacity(); i++) {
+                    out.writeByte(table.get(i));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    // memory-map tables written by save()
+    public static PatternDatabase load(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a pattern database");
+            }
+            int N = data.getInt();
+            int[][] groups = new int[data.getInt()][];
+            for (int g = 0; g < groups.length; g++) {
+                groups[g] = new int[data.getInt()];
+                for (int i = 0; i < groups[g].length; i++) {
+                    groups[g][i] = data.getInt();
+                }
+            }
+            ByteBuffer[] tables = new ByteBuffer[groups.length];
+            for (int g = 0; g < groups.length; g++) {
+                long size = permutations(N*N, groups[g].length);
+                if (data.remaining() < size) {
+                    throw new IOException(filename + " is truncated");
+                }
+                ByteBuffer table = data.slice();
+                table.limit((int) size);
+                tables[g] = table;
+                data.position(data.position() + (int) size);
+            }
+            return new PatternDatabase(N, groups, tables);
+        } finally {
+            file.close();   // the mapping stays valid after the channel is closed
+        }
+    }
+
+    // resizing int array stack used by the breadth-first search
+    private static class IntStack {
+        private int[] a = new int[64];
+        private int n = 0;
+
+        boolean isEmpty() {
+            return n == 0;
+        }
+
+        void push(int x) {
+            if (n == a.length) a = Arrays.copyOf(a, 2 * n);
+            a[n++] = x;
+        }
+
+        int pop() {
+            return a[--n];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {   // build and save a database
+        int N = Integer.parseInt(args[0]);
+        PatternDatabase pdb;
+        Stopwatch timer = new Stopwatch();
+        if (args.length > 2) {
+            int[][] groups = new int[args.length - 2][];
+            for (int g = 0; g < groups.length; g++) {
+                String[] tiles = args[g + 2].split(",");
+                groups[g] = new int[tiles.length];
+                for (int i = 0; i < tiles.length; i++) {
+                    groups[g][i] = Integer.parseInt(tiles[i]);
+                }
+            }
+            pdb = new PatternDatabase(N, groups);
+        } else {
+            pdb = defaultFor(N);
+        }
+        StdOut.println("build time = " + timer.elapsedTime());
+        pdb.save(args[1]);
+    }
+}
@@ -0,0 +1,52 @@
+/*************************************************************************
+ *  Compilation:  javac SearchStats.java
+ *
+ *  Counters collected by Solver during one search.
+ *
+ *  Node counts are always kept. Splitting time between successor
+ *  generation, heuristic evaluation and open-list operations needs
+ *  System.nanoTime() around every call, so it is only done when the JVM
+ *  runs with -Dsolver.timing=true. TIMING is a static final constant, so
+ *  the timing code costs nothing when it is off.
+ *
+ *  Manhattan distance and linear conflicts are updated incrementally as
+ *  each successor is built, so their cost is in the successor time. The
+ *  heuristic time only covers estimates computed from scratch on a
+ *  finished board, such as a pattern database lookup or the backward
+ *  manhattan of bidirectional search.
+ *
+ *************************************************************************/
+
+public class SearchStats {
+    static final boolean TIMING = Boolean.getBoolean("solver.timing");
+
+    long expanded;          // nodes taken off the open list and expanded
+    long generated;         // successor boards generated by expansions
+    long duplicates;        // boards dropped because they were already reached as cheaply
+    long peakOpen;          // largest open list (IDA*: deepest stack)
+    long successorNanos;    // time building successors, incremental heuristics included, if TIMING
+    long heuristicNanos;    // time in from-scratch heuristic evaluation, if TIMING
+    long openListNanos;     // time in open-list insert and delete-min, if TIMING
+
+    public long expanded()        { return expanded;       }
+    public long generated()       { return generated;      }
+    public long duplicates()      { return duplicates;     }
+    public long peakOpen()        { return peakOpen;       }
+    public long successorNanos()  { return successorNanos; }
+    public long heuristicNanos()  { return heuristicNanos; }
+    public long openListNanos()   { return openListNanos;  }
+
+    void openSize(long size) {  // record the open list size
+        if (size > peakOpen) peakOpen = size;
+    }
+
+    public String toString() {
+        String s = "expanded = " + expanded + ", generated = " + generated
+            + ", duplicates = " + duplicates + ", peak open = " + peakOpen;
+        if (TIMING) {
+            s += String.format(", successors = %.3fs, heuristic = %.3fs, open list = %.3fs",
+                successorNanos / 1e9, heuristicNanos / 1e9, openListNanos / 1e9);
+        }
+        return s;
+    }
+}
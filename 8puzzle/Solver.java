@@ -1,105 +1,316 @@
 /*************************************************************************
  *  Compilation:  javac Solver.java
- *  Execution:    java Solver puzzle01.txt
+ *  Execution:    java Solver puzzle01.txt [astar | idastar | bidirectional] [manhattan | hamming | linear | pdb.dat]
  *
- *  implement the A* algorithm using MinPQ data type
+ *  implement the A* algorithm using a BucketQueue of search nodes and a
+ *  BoardTable of expanded boards, with any admissible Heuristic.
+ *  Algorithm.IDASTAR: iterative-deepening A* (see IDAStar), manhattan or linear.
+ *  Algorithm.BIDIRECTIONAL: A* from both ends until they meet, manhattan only.
+ *  Limits: past maxNodes or timeoutMillis, Solver.LimitExceededException.
+ *  stats(): search counters, timed with -Dsolver.timing=true (see SearchStats).
  *
  *************************************************************************/
 
+import java.io.IOException;
 import java.util.Iterator;
-import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 public class Solver {
+    // search algorithm used to solve the board
+    public enum Algorithm { ASTAR, IDASTAR, BIDIRECTIONAL }
+
+    // thrown when a search expands more nodes or runs longer than allowed
+    public static class LimitExceededException extends RuntimeException {
+        private final boolean timeout;
+
+        LimitExceededException(boolean timeout) {
+            super(timeout ? "time limit exceeded" : "node limit exceeded");
+            this.timeout = timeout;
+        }
+
+        public boolean isTimeout() {    // time limit rather than node limit?
+            return timeout;
+        }
+    }
+
+    private final Heuristic heuristic;    // lower bound used to order the search
+    private final long maxNodes;        // most nodes to expand
+    private final long timeoutNanos;    // longest time to search
+    private final long startNanos;      // System.nanoTime() when the search began
+    private final SearchStats stats = new SearchStats();
     private int ansMoves;
-    private SearchNode ansLastNode;
+    private Board[] ansPath;    // boards from initial to goal; null if unsolvable
 
     private class SearchNode {
         private Board board;
         private int moves;
+        private int heuristic;      // cached heuristic estimate of board
+        private int priority;       // cached moves + heuristic
         private SearchNode prev;
 
-        void setBoard(Board b) {    // accessor method
-            board = b;
-        }
-
-        void setMoves(int v) {
-            moves = v;
+        SearchNode(Board b, int moves, SearchNode prev) {
+            this(b, moves, estimate(b), prev);
         }
 
-        void setPrevNode(SearchNode sn) {
-            prev = sn;
+        SearchNode(Board b, int moves, int heuristic, SearchNode prev) {
+            this.board = b;
+            this.moves = moves;
+            this.heuristic = heuristic;
+            this.priority = moves + heuristic;
+            this.prev = prev;
         }
     }
 
     // find a solution to the initial board (using the A* algorithm)
-    public Solver(final Board initial) {  
+    public Solver(final Board initial) {
+        this(initial, Algorithm.ASTAR);
+    }
+
+    // find a solution to the initial board using the given algorithm
+    public Solver(final Board initial, Algorithm algorithm) {
+        this(initial, algorithm, Heuristic.MANHATTAN);
+    }
+
+    // find a solution to the initial board using the given algorithm and heuristic
+    public Solver(final Board initial, Algorithm algorithm, Heuristic heuristic) {
+        this(initial, algorithm, heuristic, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    // as above, but give up after expanding maxNodes nodes or after timeoutMillis
+    public Solver(final Board initial, Algorithm algorithm, Heuristic heuristic,
+                  long maxNodes, long timeoutMillis) {
+        if (initial == null || algorithm == null || heuristic == null) {
+            throw new NullPointerException();
+        }
+        checkSupported(algorithm, heuristic);
+        if (maxNodes < 1 || timeoutMillis < 1) {
+            throw new IllegalArgumentException("limits must be positive");
+        }
+        this.heuristic = heuristic;
+        this.maxNodes = maxNodes;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.startNanos = System.nanoTime();
         ansMoves = -1;
-        ansLastNode = null;
+        ansPath = null;
+        if (!initial.isSolvable()) {
+            return;
+        }
 
-        MinPQ<SearchNode> startSearch = initSearchNodes(initial);
-        MinPQ<SearchNode> twinSearch = initSearchNodes(initial.twin());
+        if (algorithm == Algorithm.IDASTAR) {
+            idaStar(initial);
+        } else if (algorithm == Algorithm.BIDIRECTIONAL) {
+            bidirectional(initial);
+        } else {
+            aStar(initial);
+        }
+    }
 
-        while (!startSearch.isEmpty() && !twinSearch.isEmpty()) {
-            SearchNode startMin = startSearch.delMin();
-            SearchNode twinMin = twinSearch.delMin();
-            if (startMin.board.isGoal()) {
-                this.ansMoves = startMin.moves;
-                this.ansLastNode = startMin;
-                return;
-            } else if (twinMin.board.isGoal()) {
-                this.ansMoves = -1;
-                this.ansLastNode = null;
+    // throw IllegalArgumentException unless algorithm can search with heuristic
+    public static void checkSupported(Algorithm algorithm, Heuristic heuristic) {
+        if (algorithm == Algorithm.IDASTAR && heuristic != Heuristic.MANHATTAN
+            && heuristic != Heuristic.LINEAR_CONFLICT) {
+            throw new IllegalArgumentException("IDA* only supports the manhattan and linear conflict heuristics");
+        }
+        if (algorithm == Algorithm.BIDIRECTIONAL && heuristic != Heuristic.MANHATTAN) {
+            throw new IllegalArgumentException("bidirectional search only supports the manhattan heuristic");
+        }
+    }
+
+    private void aStar(Board initial) {
+        BucketQueue<SearchNode> openNodes = initSearchNodes(initial);
+        BoardTable<SearchNode> closedNodes = new BoardTable<SearchNode>();
+
+        while (!openNodes.isEmpty()) {
+            SearchNode minNode = delMin(openNodes);
+            if (minNode.board.isGoal()) {
+                this.ansMoves = minNode.moves;
+                this.ansPath = new Board[minNode.moves + 1];
+                for (SearchNode sn = minNode; sn != null; sn = sn.prev) {
+                    ansPath[sn.moves] = sn.board;
+                }
                 return;
-            } else {
-                neighboringSearch(startSearch, startMin);
-                neighboringSearch(twinSearch, twinMin);
             }
+            neighboringSearch(openNodes, closedNodes, minNode);
         }
     }
 
-    private class PrioritySearch implements Comparator<SearchNode> {
-        public int compare(SearchNode sn1, SearchNode sn2) {
-            int priority1 = sn1.board.manhattan() + sn1.moves;
-            int priority2 = sn2.board.manhattan() + sn2.moves;
-            if (priority1 < priority2) {
-                return -1;
-            } else if (priority1 == priority2) {
-                return 0;
-            } else {
-                return 1;
+    // count one expansion, giving up past the node or time limit
+    private void countExpansion() {
+        long expanded = ++stats.expanded;
+        if (expanded > maxNodes) {
+            throw new LimitExceededException(false);
+        }
+        if ((expanded & 0xFF) == 0 && System.nanoTime() - startNanos > timeoutNanos) {
+            throw new LimitExceededException(true);
+        }
+    }
+
+    // neighbors of board, with their incremental heuristics, timed if SearchStats.TIMING
+    private Iterable<Board> successors(Board board) {
+        if (!SearchStats.TIMING) {
+            return board.neighbors();
+        }
+        long start = System.nanoTime();
+        Iterable<Board> neighbors = board.neighbors();
+        stats.successorNanos += System.nanoTime() - start;
+        return neighbors;
+    }
+
+    // heuristic estimate of board, timed if SearchStats.TIMING
+    private int estimate(Board board) {
+        if (!SearchStats.TIMING) {
+            return heuristic.estimate(board);
+        }
+        long start = System.nanoTime();
+        int h = heuristic.estimate(board);
+        stats.heuristicNanos += System.nanoTime() - start;
+        return h;
+    }
+
+    // open-list operations, counted and timed if SearchStats.TIMING
+    private void insert(BucketQueue<SearchNode> open, SearchNode node) {
+        long start = SearchStats.TIMING ? System.nanoTime() : 0;
+        // by priority, then heuristic; heuristic <= priority, so the pairs map to distinct ordered buckets
+        open.insert(node.priority * (node.priority + 1) / 2 + node.heuristic, node);
+        if (SearchStats.TIMING) stats.openListNanos += System.nanoTime() - start;
+        stats.openSize(open.size());
+    }
+
+    private SearchNode delMin(BucketQueue<SearchNode> open) {
+        long start = SearchStats.TIMING ? System.nanoTime() : 0;
+        SearchNode node = open.delMin();
+        if (SearchStats.TIMING) stats.openListNanos += System.nanoTime() - start;
+        return node;
+    }
+
+    private void idaStar(Board initial) {
+        IDAStar search = new IDAStar(initial, heuristic == Heuristic.LINEAR_CONFLICT);
+        search.setLimits(maxNodes, startNanos, timeoutNanos);
+        search.setStats(stats);
+        while (!search.iterate()) { }
+        this.ansMoves = search.moves();
+        this.ansPath = search.solution();
+    }
+
+    private void bidirectional(Board initial) {
+        int size = initial.rows() * initial.cols();
+        Board goal = Board.goal(initial.rows(), initial.cols());
+        int[] initialWhere = new int[size];     // position of each block on the initial board
+        for (int i = 0; i < size; i++) {
+            initialWhere[initial.tileAt(i)] = i;
+        }
+
+        BucketQueue<SearchNode> fwdOpen = new BucketQueue<SearchNode>();
+        BucketQueue<SearchNode> bwdOpen = new BucketQueue<SearchNode>();
+        BoardTable<SearchNode> fwdBest = new BoardTable<SearchNode>();  // best node per board
+        BoardTable<SearchNode> bwdBest = new BoardTable<SearchNode>();
+        SearchNode fwdStart = new SearchNode(initial, 0, initial.manhattan(), null);
+        SearchNode bwdStart = new SearchNode(goal, 0, goal.manhattan(initialWhere), null);
+        insert(fwdOpen, fwdStart);
+        fwdBest.put(initial, fwdStart);
+        insert(bwdOpen, bwdStart);
+        bwdBest.put(goal, bwdStart);
+
+        int mu = initial.isGoal() ? 0 : Integer.MAX_VALUE;  // cheapest meeting so far
+        SearchNode fwdMeet = fwdStart;
+        SearchNode bwdMeet = bwdStart;
+        while (true) {
+            dropStale(fwdOpen, fwdBest);
+            dropStale(bwdOpen, bwdBest);
+            if (fwdOpen.isEmpty() || bwdOpen.isEmpty()) break;
+            if (mu <= Math.max(fwdOpen.min().priority, bwdOpen.min().priority)) break;  // mu is optimal
+
+            // expand the smaller frontier
+            boolean forward = fwdOpen.size() <= bwdOpen.size();
+            BucketQueue<SearchNode> open = forward ? fwdOpen : bwdOpen;
+            BoardTable<SearchNode> best = forward ? fwdBest : bwdBest;
+            BoardTable<SearchNode> otherBest = forward ? bwdBest : fwdBest;
+            SearchNode curNode = delMin(open);
+            countExpansion();
+
+            for (Board curBoard : successors(curNode.board)) {
+                stats.generated++;
+                int moves = curNode.moves + 1;
+                SearchNode seen = best.get(curBoard);
+                if (seen != null && seen.moves <= moves) {
+                    stats.duplicates++;
+                    continue;
+                }
+                long start = SearchStats.TIMING ? System.nanoTime() : 0;
+                int h = forward ? curBoard.manhattan() : curBoard.manhattan(initialWhere);
+                if (SearchStats.TIMING) stats.heuristicNanos += System.nanoTime() - start;
+                SearchNode newNode = new SearchNode(curBoard, moves, h, curNode);
+                best.put(curBoard, newNode);
+                insert(open, newNode);
+
+                SearchNode other = otherBest.get(curBoard);
+                if (other != null && moves + other.moves < mu) {
+                    mu = moves + other.moves;
+                    fwdMeet = forward ? newNode : other;
+                    bwdMeet = forward ? other : newNode;
+                }
             }
         }
+
+        // forward chain back to initial, then backward chain on to goal
+        this.ansMoves = mu;
+        this.ansPath = new Board[mu + 1];
+        for (SearchNode sn = fwdMeet; sn != null; sn = sn.prev) {
+            ansPath[sn.moves] = sn.board;
+        }
+        for (SearchNode sn = bwdMeet; sn != null; sn = sn.prev) {
+            ansPath[mu - sn.moves] = sn.board;
+        }
     }
 
-    private MinPQ<SearchNode> initSearchNodes(Board init) {
+    // pop nodes superseded by a shorter path to the same board
+    private void dropStale(BucketQueue<SearchNode> open, BoardTable<SearchNode> best) {
+        while (!open.isEmpty() && best.get(open.min().board) != open.min()) {
+            delMin(open);
+            stats.duplicates++;
+        }
+    }
+
+    private BucketQueue<SearchNode> initSearchNodes(Board init) {
         if (init == null) {
             throw new NullPointerException();
         }
-        PrioritySearch priorityOrder = new PrioritySearch();
-        MinPQ<SearchNode> openNodes = new MinPQ<SearchNode>(priorityOrder); 
-        SearchNode firstNode = new SearchNode();
-        firstNode.setBoard(init);
-        firstNode.setMoves(0);
-        firstNode.setPrevNode(null);
-        openNodes.insert(firstNode);
+        BucketQueue<SearchNode> openNodes = new BucketQueue<SearchNode>();
+        SearchNode firstNode = new SearchNode(init, 0, null);
+        insert(openNodes, firstNode);
         return openNodes;
     }
 
-    private void neighboringSearch(MinPQ<SearchNode> openNodes, SearchNode curNode) {
-        Iterable<Board> iterable = curNode.board.neighbors();
+    private void neighboringSearch(BucketQueue<SearchNode> openNodes,
+        BoardTable<SearchNode> closedNodes, SearchNode curNode) {
+        SearchNode expanded = closedNodes.get(curNode.board);
+        if (expanded != null && expanded.moves <= curNode.moves) {  // no shorter than before
+            stats.duplicates++;
+            return;
+        }
+        closedNodes.put(curNode.board, curNode);
+        countExpansion();
+
+        Iterable<Board> iterable = successors(curNode.board);
         Iterator<Board> iter = iterable.iterator();
         while (iter.hasNext()) {
             Board curBoard = iter.next();
-            if (curNode.prev == null  || !curBoard.equals(curNode.prev.board)) {
-                SearchNode newNode = new SearchNode();
-                newNode.setBoard(curBoard);
-                newNode.setMoves(curNode.moves + 1);
-                newNode.setPrevNode(curNode);                
-                openNodes.insert(newNode);
+            stats.generated++;
+            expanded = closedNodes.get(curBoard);
+            if (expanded == null || expanded.moves > curNode.moves + 1) {
+                SearchNode newNode = new SearchNode(curBoard, curNode.moves + 1, curNode);
+                insert(openNodes, newNode);
+            } else {
+                stats.duplicates++;
             }
         }
     }
 
+    public SearchStats stats() {    // counters of the search that was run
+        return stats;
+    }
+
     public boolean isSolvable() {   // is the initial board solvable?
         return ansMoves != -1;
     }
@@ -123,23 +334,15 @@ public class Solver {
     }
 
     private class SolutionIterator implements Iterator<Board> {
-        private Stack<Board> solutSeq;
-
-        private SolutionIterator() {
-            solutSeq = new Stack<Board>();
-            SearchNode curNode = ansLastNode;
-            while (curNode != null) {
-                solutSeq.push(curNode.board);
-                curNode = curNode.prev;
-            }
-        }
+        private int next = 0;   // index of next board in ansPath
 
         public boolean hasNext() {
-            return !solutSeq.isEmpty();
+            return next < ansPath.length;
         }
 
         public Board next() {
-            return solutSeq.pop();
+            if (!hasNext()) throw new NoSuchElementException();
+            return ansPath[next++];
         }
 
         public void remove() {
@@ -147,7 +350,7 @@ public class Solver {
         }
     }
 
-    public static void main(String[] args) {    // solve a slider puzzle
+    public static void main(String[] args) throws IOException {    // solve a slider puzzle
         // create initial board from file
         In in = new In(args[0]);
         int N = in.readInt();
@@ -157,14 +360,40 @@ public class Solver {
                 blocks[i][j] = in.readInt();
         Board initial = new Board(blocks);
 
-        // solve the puzzle
-        Solver solver = new Solver(initial);
+        // solve the puzzle, optionally with the algorithm named by args[1]
+        Algorithm algorithm = Algorithm.ASTAR;
+        if (args.length > 1) {
+            algorithm = Algorithm.valueOf(args[1].toUpperCase());
+        }
+        Heuristic heuristic = Heuristic.MANHATTAN;
+        boolean usePdb = false;
+        if (args.length > 2) {
+            if (args[2].equalsIgnoreCase("manhattan")) {
+                heuristic = Heuristic.MANHATTAN;
+            } else if (args[2].equalsIgnoreCase("hamming")) {
+                heuristic = Heuristic.HAMMING;
+            } else if (args[2].equalsIgnoreCase("linear")) {
+                heuristic = Heuristic.LINEAR_CONFLICT;
+            } else {    // pattern database, timed apart from the search
+                usePdb = true;
+                Stopwatch loadTimer = new Stopwatch();
+                heuristic = PatternDatabase.load(args[2]);
+                heuristic.estimate(initial);
+                StdOut.println("pdb load time = " + loadTimer.elapsedTime());
+            }
+        }
+        Stopwatch solveTimer = new Stopwatch();
+        Solver solver = new Solver(initial, algorithm, heuristic);
+        if (usePdb) {
+            StdOut.println("solve time = " + solveTimer.elapsedTime());
+        }
 
         // print solution to standard output
         if (!solver.isSolvable())
             StdOut.println("No solution possible");
         else {
             StdOut.println("Minimum number of moves = " + solver.moves());
+            StdOut.println("Search: " + solver.stats());
             for (Board board : solver.solution())
                 StdOut.println(board);
         }
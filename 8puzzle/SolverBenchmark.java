@@ -0,0 +1,194 @@
+/*************************************************************************
+ *  Compilation:  javac SolverBenchmark.java
+ *  Execution:    java [-Dsolver.timing=true] SolverBenchmark
+ *                    [astar | idastar | bidirectional] [manhattan | hamming | linear]
+ *
+ *  Throughput of Board.neighbors() and full solves over a fixed corpus
+ *  of 3x3 and 4x4 boards, grouped by difficulty (optimal solution
+ *  length), so runs can be compared across changes.
+ *
+ *  neighbors() carries manhattan and linear conflicts over from the
+ *  parent by the moved tile's delta, so the heuristics are paid for in
+ *  neighbors/s. scratch/s builds the same successor boards from their
+ *  tiles, computing every heuristic from scratch, to show what the
+ *  incremental path saves.
+ *
+ *  Every measurement is repeated until it has run for at least
+ *  MIN_SECONDS, after WARMUP untimed rounds to let the JIT settle.
+ *
+ *  The solve heuristic defaults to linear conflict, or to manhattan for
+ *  bidirectional search, which supports nothing else. A pair Solver does
+ *  not support is rejected with a usage message before anything is timed.
+ *
+ *************************************************************************/
+
+public class SolverBenchmark {
+    private static final int WARMUP = 3;
+    private static final double MIN_SECONDS = 1.0;
+
+    private static final String[] GROUPS = {
+        "3x3 easy", "3x3 medium", "3x3 hard", "4x4 easy", "4x4 medium", "4x4 hard"
+    };
+
+    // CORPUS[g] = boards of GROUPS[g], row-major, optimal moves in the comments
+    private static final int[][][] CORPUS = {
+        {   { 1, 8, 2, 4, 0, 3, 7, 6, 5 },                                  //  8
+            { 0, 8, 2, 5, 1, 3, 4, 7, 6 },                                  // 12
+            { 6, 4, 2, 1, 5, 0, 7, 8, 3 } },                                // 13
+        {   { 6, 3, 0, 1, 2, 5, 7, 8, 4 },                                  // 18
+            { 0, 5, 6, 1, 2, 7, 3, 4, 8 },                                  // 20
+            { 5, 4, 8, 3, 0, 1, 2, 6, 7 } },                                // 22
+        {   { 0, 3, 7, 4, 5, 1, 6, 2, 8 },                                  // 24
+            { 0, 8, 7, 3, 6, 1, 4, 2, 5 },                                  // 26
+            { 8, 6, 7, 2, 5, 4, 3, 0, 1 } },                                // 31
+        {   { 1, 2, 3, 4, 9, 5, 7, 0, 6, 10, 11, 8, 13, 14, 15, 12 },       // 10
+            { 1, 2, 3, 4, 9, 5, 6, 8, 13, 7, 11, 12, 14, 10, 15, 0 },       // 12
+            { 1, 0, 6, 2, 5, 10, 8, 3, 9, 11, 15, 7, 13, 14, 12, 4 } },     // 19
+        {   { 2, 4, 6, 8, 1, 10, 7, 3, 0, 11, 12, 15, 14, 5, 9, 13 },       // 30
+            { 6, 1, 0, 2, 5, 10, 7, 3, 11, 9, 14, 15, 13, 12, 8, 4 },       // 32
+            { 2, 3, 0, 4, 1, 13, 12, 11, 7, 5, 10, 15, 14, 6, 9, 8 } },     // 34
+        {   { 13, 7, 3, 4, 6, 5, 8, 0, 1, 2, 11, 15, 14, 10, 12, 9 },       // 40
+            { 7, 1, 8, 3, 6, 2, 11, 4, 15, 14, 0, 13, 9, 10, 12, 5 },       // 42
+            { 0, 6, 7, 3, 4, 1, 9, 2, 5, 12, 14, 15, 10, 11, 13, 8 } }      // 44
+    };
+
+    private static Board[] boards(int group) {
+        Board[] boards = new Board[CORPUS[group].length];
+        for (int b = 0; b < boards.length; b++) {
+            int[] tiles = CORPUS[group][b];
+            int N = (int) Math.round(Math.sqrt(tiles.length));
+            int[][] blocks = new int[N][N];
+            for (int i = 0; i < tiles.length; i++) {
+                blocks[i / N][i % N] = tiles[i];
+            }
+            boards[b] = new Board(blocks);
+        }
+        return boards;
+    }
+
+    // one timed operation over a set of boards; returns a checksum so it is not optimized away
+    private interface Op {
+        long run(Board[] boards);
+    }
+
+    // operations per second of op, where one call of op performs opsPerCall operations
+    private static double throughput(Op op, Board[] boards, long opsPerCall) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += op.run(boards);
+        }
+        long calls = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += op.run(boards);
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MIN_SECONDS * 1e9);
+        if (sink == 42) StdOut.print("");
+        return calls * opsPerCall / (elapsed / 1e9);
+    }
+
+    // print problem and the command line, then exit
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("usage: java SolverBenchmark [astar | idastar | bidirectional]"
+                           + " [manhattan | hamming | linear]");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) {
+        Solver.Algorithm a = Solver.Algorithm.ASTAR;
+        if (args.length > 0) {
+            try {
+                a = Solver.Algorithm.valueOf(args[0].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                usage("unknown algorithm " + args[0]);
+            }
+        }
+        final Solver.Algorithm algorithm = a;
+        Heuristic h = algorithm == Solver.Algorithm.BIDIRECTIONAL
+            ? Heuristic.MANHATTAN : Heuristic.LINEAR_CONFLICT;
+        if (args.length > 1) {
+            if (args[1].equalsIgnoreCase("manhattan"))    h = Heuristic.MANHATTAN;
+            else if (args[1].equalsIgnoreCase("hamming")) h = Heuristic.HAMMING;
+            else if (args[1].equalsIgnoreCase("linear"))  h = Heuristic.LINEAR_CONFLICT;
+            else usage("unknown heuristic " + args[1]);
+        }
+        final Heuristic heuristic = h;
+        try {
+            Solver.checkSupported(algorithm, heuristic);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        }
+
+        Op neighbors = new Op() {
+            public long run(Board[] boards) {
+                long sum = 0;
+                for (Board board : boards)
+                    for (Board nb : board.neighbors())
+                        sum += nb.hashCode();
+                return sum;
+            }
+        };
+        Op scratch = new Op() {     // rebuild each of boards from its tiles, as neighbors() copies them
+            public long run(Board[] boards) {
+                long sum = 0;
+                for (Board board : boards) {
+                    byte[] tiles = new byte[board.rows() * board.cols()];
+                    for (int i = 0; i < tiles.length; i++)
+                        tiles[i] = (byte) board.tileAt(i);
+                    sum += new Board(tiles, board.rows(), board.cols()).linearConflict();
+                }
+                return sum;
+            }
+        };
+        Op solve = new Op() {
+            public long run(Board[] boards) {
+                long sum = 0;
+                for (Board board : boards)
+                    sum += new Solver(board, algorithm, heuristic).moves();
+                return sum;
+            }
+        };
+
+        StdOut.println("algorithm = " + algorithm + ", solve heuristic = " + heuristicName(heuristic));
+        StdOut.printf("%-12s %14s %14s %12s %s%n",
+            "group", "neighbors/s", "scratch/s", "solves/s", "search");
+        for (int g = 0; g < GROUPS.length; g++) {
+            Board[] boards = boards(g);
+            Queue<Board> successors = new Queue<Board>();
+            for (Board board : boards)
+                for (Board nb : board.neighbors())
+                    successors.enqueue(nb);
+            Board[] children = new Board[successors.size()];
+            int k = 0;
+            for (Board nb : successors)
+                children[k++] = nb;
+
+            SearchStats total = new SearchStats();
+            for (Board board : boards) {
+                SearchStats stats = new Solver(board, algorithm, heuristic).stats();
+                total.expanded += stats.expanded();
+                total.generated += stats.generated();
+                total.duplicates += stats.duplicates();
+                total.openSize(stats.peakOpen());
+                total.successorNanos += stats.successorNanos();
+                total.heuristicNanos += stats.heuristicNanos();
+                total.openListNanos += stats.openListNanos();
+            }
+
+            StdOut.printf("%-12s %14.0f %14.0f %12.2f %s%n", GROUPS[g],
+                throughput(neighbors, boards, children.length),
+                throughput(scratch, children, children.length),
+                throughput(solve, boards, boards.length),
+                total);
+        }
+    }
+
+    private static String heuristicName(Heuristic heuristic) {
+        if (heuristic == Heuristic.MANHATTAN) return "manhattan";
+        if (heuristic == Heuristic.HAMMING)   return "hamming";
+        return "linear";
+    }
+}
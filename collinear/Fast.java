@@ -1,8 +1,8 @@
 /*************************************************************************
  *
  * Compilation:  javac Fast.java
- * Execution:   java Fast input4.txt
- * Dependencies: Point.java, In.java,  StdDraw.java
+ * Execution:   java Fast input4.txt [threads]
+ * Dependencies: Point.java, HashFast.java, In.java,  StdDraw.java
  *
  * Description: A faster, sorting-based solution. 
  * Remarkably, it is possible to solve the problem much faster than the
@@ -23,11 +23,33 @@
  * The order of growth of the running time of your program should be 
  *  N . N . log N in the worst case and it should use space proportional to N.
  *
+ * Each pass computes the slope from the origin to every later point once,
+ * into a double[], and sorts an int[] of point indices by those keys with a
+ * primitive 3-way quicksort, so the inner loop makes no comparator calls
+ * and no divisions. For coordinates below 32768 the double slopes are exact
+ * enough: equal slopes give equal doubles and unequal slopes differ.
+ *
+ * Origins are taken in sorted order, so a maximal segment is first found
+ * from its smallest point, with all its other points. Each point found on
+ * it records the segment's slope, and a later origin skips a run whose
+ * slope it has recorded: that run is a subset of a reported segment.
+ * Checking takes time proportional to the segments through the origin,
+ * instead of a scan of every segment found so far.
+ *
+ * With a thread count, the origins are split over a ForkJoinPool. A worker
+ * cannot see what earlier origins reported, so each leaf task sorts the
+ * later points of its origins, with its own scratch arrays, and keeps
+ * every run, subsets included. The lists are joined in origin order and
+ * a run is dropped if its line, keyed as in HashFast, was already kept,
+ * so the result is the same list the sequential version returns.
+ *
  *************************************************************************/
 
 import java.util.Collections;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class Fast {
     public static void main(String[] args) {
@@ -51,45 +73,11 @@ public class Fast {
         StdDraw.show(0);       
         StdDraw.setPenRadius(); // reset the pen radius
 
-        Arrays.sort(points);    // natural sort by y value
-        Point[] aux = new Point[N];   // aux helper
-        ArrayList<ArrayList<Point>> listOfList = new ArrayList<ArrayList<Point>>();
-
-        for (int i = 0; i < N; i++) {
-            Point p = points[i];    // pick origin point
-            System.arraycopy(points, 0, aux, 0, N); // copy points to aux
-            Arrays.sort(aux, i, N, p.SLOPE_ORDER);  // sort from i to N
-
-            ArrayList<Point> collinear = new ArrayList<Point>();
-            for (int q = i+1; q < N; q++) {    // scan from i+1
-                if (p == aux[q]) {  // same point
-                    continue;
-                }
-                if (collinear.isEmpty()) {
-                    collinear.add(aux[q]);
-                } else if (p.slopeTo(aux[q-1]) == p.slopeTo(aux[q])) {
-                    collinear.add(aux[q]);
-                } else if (collinear.size() > 2) {
-                    collinear.add(p);   // add origin p
-                    Collections.sort(collinear);   // sort collinear
-                    if (listOfList.isEmpty() || !isSubSet(collinear, listOfList)) {
-                        listOfList.add(collinear); 
-                    }
-                    collinear = new ArrayList<Point>();
-                    collinear.add(aux[q]);
-                } else {                   
-                    collinear.clear();
-                    collinear.add(aux[q]);
-                }
-            }
-
-            if (collinear.size() > 2) {
-                collinear.add(p);   // add origin p
-                Collections.sort(collinear);   // sort collinear
-                if (listOfList.isEmpty() || !isSubSet(collinear, listOfList)) {
-                    listOfList.add(collinear); 
-                }
-            }             
+        ArrayList<ArrayList<Point>> listOfList;
+        if (args.length > 1) {
+            listOfList = segments(points, Integer.parseInt(args[1]));
+        } else {
+            listOfList = segments(points);
         }
 
         // print final result
@@ -108,15 +96,182 @@ public class Fast {
         StdDraw.show(0);
     }
 
-    // check collinear is the subset of listOfList
-    private static boolean isSubSet(ArrayList<Point> checkList, 
-        ArrayList<ArrayList<Point>> listOfList) {
-        for (ArrayList<Point> aList : listOfList) {
-            if (aList.contains(Collections.min(checkList))
-                && aList.contains(Collections.max(checkList))) {
-                    return true;
+    // every maximal set of 4 or more collinear points, each sorted
+    public static ArrayList<ArrayList<Point>> segments(Point[] input) {
+        int N = input.length;
+        Point[] points = input.clone();
+        Arrays.sort(points);    // natural sort by y value
+        int[] aux = new int[N];         // indices of the points after the origin
+        double[] slopes = new double[N];  // slopes[k] = slope from origin to points[aux[k]]
+        double[][] covered = new double[N][];   // slopes of reported segments through each point
+        int[] coveredCount = new int[N];
+        ArrayList<ArrayList<Point>> listOfList = new ArrayList<ArrayList<Point>>();
+
+        for (int i = 0; i < N; i++) {
+            Point p = points[i];    // pick origin point
+            int m = 0;
+            for (int q = i+1; q < N; q++) {    // slopes from i+1, computed once
+                aux[m] = q;
+                slopes[m] = p.slopeTo(points[q]);
+                m++;
+            }
+            sort(slopes, aux, 0, m - 1);
+
+            for (int lo = 0, hi; lo < m; lo = hi) {     // runs of equal slope
+                hi = lo + 1;
+                while (hi < m && slopes[hi] == slopes[lo]) {
+                    hi++;
+                }
+                if (hi - lo > 2 && !isCovered(covered[i], coveredCount[i], slopes[lo])) {
+                    ArrayList<Point> collinear = new ArrayList<Point>(hi - lo + 1);
+                    for (int k = lo; k < hi; k++) {
+                        collinear.add(points[aux[k]]);
+                        int q = aux[k];     // record the slope on the point
+                        if (covered[q] == null) {
+                            covered[q] = new double[2];
+                        } else if (coveredCount[q] == covered[q].length) {
+                            covered[q] = Arrays.copyOf(covered[q], 2 * coveredCount[q]);
+                        }
+                        covered[q][coveredCount[q]++] = slopes[lo];
+                    }
+                    collinear.add(p);   // add origin p
+                    Collections.sort(collinear);   // sort collinear
+                    listOfList.add(collinear);
+                }
+            }
+        }
+        return listOfList;
+    }
+
+    // the same as segments(input), with origins split over threads
+    public static ArrayList<ArrayList<Point>> segments(Point[] input, int threads) {
+        if (threads < 1) throw new IllegalArgumentException();
+        Point[] points = input.clone();
+        Arrays.sort(points);    // natural sort by y value
+        int grain = Math.max(1, points.length / (threads * 8));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ArrayList<ArrayList<Point>> runs;
+        try {
+            runs = pool.invoke(new Origins(points, 0, points.length, grain));
+        } finally {
+            pool.shutdown();
+        }
+
+        // the first run on a line comes from its smallest point; later ones are subsets
+        HashFast.LineSet reported = new HashFast.LineSet();
+        ArrayList<ArrayList<Point>> listOfList = new ArrayList<ArrayList<Point>>();
+        for (ArrayList<Point> collinear : runs) {
+            Point first = collinear.get(0);
+            Point last = collinear.get(collinear.size() - 1);
+            if (first.compareTo(last) == 0
+                || reported.add(HashFast.line(first, HashFast.direction(first, last)))) {
+                listOfList.add(collinear);
+            }
+        }
+        return listOfList;
+    }
+
+    // runs of 4 or more collinear points from the origins points[lo..hi-1] to
+    // later points, in origin order, including subsets of earlier runs
+    private static class Origins extends RecursiveTask<ArrayList<ArrayList<Point>>> {
+        private final Point[] points;   // all the points, sorted
+        private final int lo, hi, grain;
+
+        Origins(Point[] points, int lo, int hi, int grain) {
+            this.points = points;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        protected ArrayList<ArrayList<Point>> compute() {
+            if (hi - lo > grain) {
+                int mid = (lo + hi) >>> 1;
+                Origins left = new Origins(points, lo, mid, grain);
+                left.fork();
+                ArrayList<ArrayList<Point>> right = new Origins(points, mid, hi, grain).compute();
+                ArrayList<ArrayList<Point>> listOfList = left.join();
+                listOfList.addAll(right);
+                return listOfList;
+            }
+
+            int N = points.length;
+            int[] aux = new int[N];         // indices of the points after the origin
+            double[] slopes = new double[N];  // slopes[k] = slope from origin to points[aux[k]]
+            ArrayList<ArrayList<Point>> listOfList = new ArrayList<ArrayList<Point>>();
+            for (int i = lo; i < hi; i++) {
+                Point p = points[i];    // pick origin point
+                int m = 0;
+                for (int q = i+1; q < N; q++) {    // slopes from i+1, computed once
+                    aux[m] = q;
+                    slopes[m] = p.slopeTo(points[q]);
+                    m++;
+                }
+                sort(slopes, aux, 0, m - 1);
+
+                for (int a = 0, b; a < m; a = b) {  // runs of equal slope
+                    b = a + 1;
+                    while (b < m && slopes[b] == slopes[a]) {
+                        b++;
+                    }
+                    if (b - a > 2) {
+                        ArrayList<Point> collinear = new ArrayList<Point>(b - a + 1);
+                        for (int k = a; k < b; k++) {
+                            collinear.add(points[aux[k]]);
+                        }
+                        collinear.add(p);   // add origin p
+                        Collections.sort(collinear);   // sort collinear
+                        listOfList.add(collinear);
+                    }
                 }
+            }
+            return listOfList;
+        }
+    }
+
+    // 3-way quicksort of keys[lo..hi], applying the same swaps to index
+    private static void sort(double[] keys, int[] index, int lo, int hi) {
+        while (hi - lo > 10) {
+            int mid = lo + (hi - lo) / 2;   // median of three as the pivot
+            if (keys[mid] < keys[lo]) swap(keys, index, mid, lo);
+            if (keys[hi] < keys[lo])  swap(keys, index, hi, lo);
+            if (keys[hi] < keys[mid]) swap(keys, index, hi, mid);
+            double v = keys[mid];
+            int lt = lo, gt = hi, k = lo;
+            while (k <= gt) {
+                if      (keys[k] < v) swap(keys, index, lt++, k++);
+                else if (keys[k] > v) swap(keys, index, k, gt--);
+                else                  k++;
+            }
+            if (lt - lo < hi - gt) {    // recurse into the smaller side
+                sort(keys, index, lo, lt - 1);
+                lo = gt + 1;
+            } else {
+                sort(keys, index, gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {    // insertion sort for small ranges
+            for (int j = i; j > lo && keys[j] < keys[j-1]; j--) {
+                swap(keys, index, j, j-1);
+            }
+        }
+    }
+
+    private static void swap(double[] keys, int[] index, int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int t = index[i];
+        index[i] = index[j];
+        index[j] = t;
+    }
+
+    // is slope among the first n recorded slopes?
+    private static boolean isCovered(double[] slopes, int n, double slope) {
+        for (int k = 0; k < n; k++) {
+            if (slopes[k] == slope) return true;
         }
         return false;
     }
-}
\ No newline at end of file
+}
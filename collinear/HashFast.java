@@ -0,0 +1,208 @@
+/*************************************************************************
+ *
+ * Compilation:  javac HashFast.java
+ * Execution:   java HashFast [N ...]
+ * Dependencies: Point.java, Fast.java, StdRandom.java, Stopwatch.java
+ *
+ * Description: the same segments as Fast, found by hashing instead of
+ * sorting. For each origin p, every later point q in the natural order
+ * is keyed by the direction from p to q: (dx, dy) divided by their gcd,
+ * which always has dy > 0, or dy == 0 and dx > 0. A primitive
+ * open-addressing table counts the points per key, so a pass is O(N)
+ * expected instead of O(N log N).
+ *
+ * Origins are taken in the natural order, so a line is first seen from
+ * its smallest point, with all its other points. Reported lines go into a
+ * set of (direction, dy*x - dx*y) pairs, and later origins on the same
+ * line skip it. Segments from one origin are ordered by slope, which
+ * gives exactly the list Fast returns.
+ *
+ * Coordinates must be between 0 and 32767 and the points must be
+ * distinct: a repeated point has no direction to hash. segments() throws
+ * IllegalArgumentException otherwise, rather than pack a wrong key.
+ *
+ * main() generates N random points for each N given (default 10000,
+ * 20000, 50000 and 100000), times both engines and checks that they agree.
+ *
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+
+public class HashFast {
+    // every maximal set of 4 or more collinear points, each sorted,
+    // in the same order as Fast.segments()
+    public static ArrayList<ArrayList<Point>> segments(Point[] input) {
+        int N = input.length;
+        Point[] points = input.clone();
+        Arrays.sort(points);    // natural sort by y value
+        for (int i = 0; i < N; i++) {
+            Point p = points[i];
+            if (p.x() < 0 || p.x() > 32767 || p.y() < 0 || p.y() > 32767) {
+                throw new IllegalArgumentException(p + " is outside 0 to 32767");
+            }
+            if (i > 0 && p.compareTo(points[i-1]) == 0) {
+                throw new IllegalArgumentException(p + " appears more than once");
+            }
+        }
+
+        int M = 16;             // table size, a power of 2 at least twice N
+        while (M < 2*N) M <<= 1;
+        int[] keys = new int[M];        // direction of the slot's line
+        int[] stamp = new int[M];       // origin index + 1 that filled the slot, 0 if never
+        int[] count = new int[M];       // later points on the line
+        int[] group = new int[M];       // index into lines, -1 if not reported yet
+        int[] slot = new int[N];        // slot of each point in this pass
+        LineSet reported = new LineSet();
+
+        ArrayList<ArrayList<Point>> listOfList = new ArrayList<ArrayList<Point>>();
+        ArrayList<ArrayList<Point>> lines = new ArrayList<ArrayList<Point>>();
+        for (int i = 0; i < N; i++) {
+            Point p = points[i];    // pick origin point
+            for (int q = i + 1; q < N; q++) {
+                int key = direction(p, points[q]);
+                int s = mix(key) & (M - 1);
+                while (stamp[s] == i + 1 && keys[s] != key) {
+                    s = (s + 1) & (M - 1);
+                }
+                if (stamp[s] != i + 1) {    // first point on this line
+                    stamp[s] = i + 1;
+                    keys[s] = key;
+                    count[s] = 0;
+                    group[s] = -1;
+                }
+                count[s]++;
+                slot[q] = s;
+            }
+
+            lines.clear();
+            for (int q = i + 1; q < N; q++) {
+                int s = slot[q];
+                if (count[s] < 3) continue;
+                if (group[s] < 0) {
+                    if (!reported.add(line(p, keys[s]))) {  // a subset of an earlier segment
+                        count[s] = 0;
+                        continue;
+                    }
+                    group[s] = lines.size();
+                    ArrayList<Point> collinear = new ArrayList<Point>(count[s] + 1);
+                    collinear.add(p);   // add origin p
+                    lines.add(collinear);
+                }
+                lines.get(group[s]).add(points[q]);
+            }
+            if (lines.isEmpty()) continue;
+
+            for (ArrayList<Point> collinear : lines) {
+                Collections.sort(collinear);   // sort collinear
+            }
+            final Point origin = p;
+            Collections.sort(lines, new Comparator<ArrayList<Point>>() {
+                public int compare(ArrayList<Point> a, ArrayList<Point> b) {
+                    return Double.compare(origin.slopeTo(a.get(1)), origin.slopeTo(b.get(1)));
+                }
+            });
+            listOfList.addAll(lines);
+        }
+        return listOfList;
+    }
+
+    // the line through p with the given direction, as a direction and
+    // the value of dy*x - dx*y shared by all its points
+    static long line(Point p, int direction) {
+        int dx = (direction >>> 16) - 32768;
+        int dy = direction & 0xFFFF;
+        long c = (long) dy * p.x() - (long) dx * p.y();     // |c| < 2^31
+        return (long) direction << 32 | ((c + (1L << 31)) & 0xFFFFFFFFL);
+    }
+
+    // set of lines, open addressing on a long[]; 0 marks an empty slot,
+    // and no line packs to 0 because its direction is never 0
+    static class LineSet {
+        private long[] table = new long[16];
+        private int n;
+
+        boolean add(long line) {    // false if line was already present
+            if (2*(n + 1) > table.length) resize();
+            int mask = table.length - 1;
+            int i = (int) (line ^ (line >>> 29)) * 0x9E3779B9 & mask;
+            for (; table[i] != 0; i = (i + 1) & mask) {
+                if (table[i] == line) return false;
+            }
+            table[i] = line;
+            n++;
+            return true;
+        }
+
+        private void resize() {
+            long[] old = table;
+            table = new long[2*old.length];
+            n = 0;
+            for (long line : old) {
+                if (line != 0) add(line);
+            }
+        }
+    }
+
+    // reduced direction from p to q, packed as (dx + 32768) << 16 | dy
+    static int direction(Point p, Point q) {
+        int dx = q.x() - p.x();
+        int dy = q.y() - p.y();
+        if (dy < 0 || (dy == 0 && dx < 0)) {
+            dx = -dx;
+            dy = -dy;
+        }
+        int g = gcd(Math.abs(dx), dy);
+        dx /= g;
+        dy /= g;
+        return (dx + 32768) << 16 | dy;
+    }
+
+    private static int gcd(int a, int b) {  // a, b >= 0, not both 0
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static int mix(int key) {   // spread the key bits over the table index
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = { 10000, 20000, 50000, 100000 };
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+        for (int N : sizes) {
+            // N distinct random points
+            Point[] points = new Point[N];
+            HashSet<Integer> used = new HashSet<Integer>();
+            for (int i = 0; i < N; i++) {
+                int x, y;
+                do {
+                    x = StdRandom.uniform(32768);
+                    y = StdRandom.uniform(32768);
+                } while (!used.add(x * 32768 + y));
+                points[i] = new Point(x, y);
+            }
+
+            Stopwatch timer = new Stopwatch();
+            ArrayList<ArrayList<Point>> sorted = Fast.segments(points);
+            double fast = timer.elapsedTime();
+            timer = new Stopwatch();
+            ArrayList<ArrayList<Point>> hashed = segments(points);
+            double hash = timer.elapsedTime();
+            StdOut.printf("N = %6d  segments = %d  Fast %8.3fs  HashFast %8.3fs  %s\n",
+                          N, sorted.size(), fast, hash,
+                          sorted.equals(hashed) ? "same" : "DIFFERENT");
+        }
+    }
+}
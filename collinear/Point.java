@@ -24,6 +24,14 @@ public class Point implements Comparable<Point> {
         this.y = y;
     }
 
+    int x() {   // x coordinate
+        return x;
+    }
+
+    int y() {   // y coordinate
+        return y;
+    }
+
     // plot this point to standard drawing
     public void draw() {
         StdDraw.point(x, y);
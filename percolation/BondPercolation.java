@@ -0,0 +1,84 @@
+/****************************************************************************
+ *  Compilation:  javac BondPercolation.java
+ *  Dependencies: GridUnionFind.java PercolationModel.java
+ *
+ *  Bond percolation on an N-by-N square grid. Every site is present and
+ *  the bonds between neighbouring sites are opened; the grid percolates
+ *  when open bonds connect the top row to the bottom row.
+ *
+ *  There are N*(N-1) horizontal bonds, bond row*(N-1) + col joining
+ *  (row, col) and (row, col+1), followed by N*(N-1) vertical bonds,
+ *  bond N*(N-1) + row*N + col joining (row, col) and (row+1, col), all
+ *  zero-based. Sites are GridUnionFind elements row*N + col, and the top
+ *  and bottom rows carry the TOP and BOTTOM flags from the start.
+ *
+ ****************************************************************************/
+
+import java.util.Arrays;
+
+public class BondPercolation implements PercolationModel {
+    private final int N;                // N-by-N sites
+    private final int horizontal;       // number of horizontal bonds, N*(N-1)
+    private final long[] bonds;         // one bit per bond: 0-blocked, 1-open
+    private final GridUnionFind uf;     // components of sites, with TOP | BOTTOM flags
+    private boolean percolates;         // some component has both flags
+
+    // create an N-by-N grid of sites with all bonds blocked; N >= 2
+    public BondPercolation(int N) {
+        if (N < 2 || 2L*N*(N-1) > Integer.MAX_VALUE) throw new IllegalArgumentException();
+        this.N = N;
+        this.horizontal = N*(N-1);
+        bonds = new long[(2*horizontal + 63) / 64];
+        uf = new GridUnionFind(N*N);
+        markBorders();
+    }
+
+    private void markBorders() {
+        for (int col = 0; col < N; col++) {
+            uf.mark(col, TOP);
+            uf.mark((N-1)*N + col, BOTTOM);
+        }
+    }
+
+    public int elements() {     // number of bonds
+        return 2*horizontal;
+    }
+
+    // block every bond again, reusing the arrays
+    public void reset() {
+        Arrays.fill(bonds, 0L);
+        uf.reset();
+        markBorders();
+        percolates = false;
+    }
+
+    // open a bond by zero-based index, unchecked
+    public void openElement(int bond) {
+        if ((bonds[bond >>> 6] & (1L << bond)) != 0) return;
+        bonds[bond >>> 6] |= 1L << bond;
+
+        int p, q;   // the sites the bond joins
+        if (bond < horizontal) {
+            int row = bond / (N-1), col = bond % (N-1);
+            p = row*N + col;
+            q = p + 1;
+        } else {
+            p = bond - horizontal;
+            q = p + N;
+        }
+        int root = uf.union(p, q);
+        if (uf.flags(root) == (TOP | BOTTOM)) percolates = true;
+    }
+
+    // is site (row i, column j), both from 1, connected to the top row?
+    public boolean isFull(int i, int j) {
+        if (i < 1 || i > N || j < 1 || j > N) {
+            throw new IndexOutOfBoundsException("Values are out of range");
+        }
+        return (uf.flags((i-1)*N + (j-1)) & TOP) != 0;
+    }
+
+    public boolean percolates() {
+        return percolates;
+    }
+}
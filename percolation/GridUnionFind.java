@@ -0,0 +1,149 @@
+/****************************************************************************
+ *  Compilation:  javac GridUnionFind.java
+ *  Execution:  java GridUnionFind [N ...]
+ *  Dependencies: WeightedQuickUnionUF.java StdRandom.java Stopwatch.java StdOut.java
+ *
+ *  Weighted union-find with path halving, for the sites of a grid.
+ *
+ *  Parent and size share one int array: id[p] >= 0 is the parent of p,
+ *  and a root r holds -size as id[r]. find() halves the path as it walks
+ *  it. There are no bounds checks; callers pass valid site indices.
+ *
+ *  Each root also carries two flag bits, OR-ed together when two
+ *  components merge, packed 32 sites to a long so they cost a quarter
+ *  of a byte per site. The percolation models use them to mark
+ *  components that touch the top or the bottom of the lattice.
+ *
+ *  main() times random grid filling against WeightedQuickUnionUF,
+ *  by default at N = 1000, 4000 and 16000 (the largest needs a few GB
+ *  of heap for the two structures).
+ *
+ ****************************************************************************/
+
+import java.util.Arrays;
+
+public class GridUnionFind {
+    private static final int FLAG_BITS = 2; // flag bits per site: flags are 0 through 3
+
+    private final int[] id;     // parent, or -size at a root
+    private final long[] flags; // flag bits of each component, bits 2p and 2p+1, valid at roots
+
+    // n singleton sites 0 through n-1, with no flags
+    public GridUnionFind(int n) {
+        if (n < 0) throw new IllegalArgumentException();
+        id = new int[n];
+        flags = new long[(int) (((long) n * FLAG_BITS + 63) / 64)];
+        Arrays.fill(id, -1);
+    }
+
+    // make every site a flagless singleton again, without reallocating
+    public void reset() {
+        Arrays.fill(id, -1);
+        Arrays.fill(flags, 0L);
+    }
+
+    // root of the component containing p
+    public int find(int p) {
+        while (id[p] >= 0) {
+            int parent = id[p];
+            if (id[parent] >= 0) {  // skip to the grandparent
+                id[p] = id[parent];
+            }
+            p = id[p];
+        }
+        return p;
+    }
+
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    // number of sites in the component containing p
+    public int size(int p) {
+        return -id[find(p)];
+    }
+
+    // flag bits of the component containing p
+    public int flags(int p) {
+        return flagsOf(find(p));
+    }
+
+    // add flag bits to the component containing p
+    public void mark(int p, int bits) {
+        if ((bits >>> FLAG_BITS) != 0) throw new IllegalArgumentException("flags must be 0 through 3");
+        addFlags(find(p), bits);
+    }
+
+    private int flagsOf(int root) {
+        return (int) (flags[root >>> 5] >>> ((root & 31) << 1)) & 3;
+    }
+
+    private void addFlags(int root, int bits) {
+        flags[root >>> 5] |= (long) bits << ((root & 31) << 1);
+    }
+
+    // merge the components containing p and q; returns the new root
+    public int union(int p, int q) {
+        return link(find(p), find(q));
+    }
+
+    // merge two roots, smaller under larger; returns the new root
+    int link(int i, int j) {
+        if (i == j) return i;
+        if (id[i] > id[j]) {    // i is smaller
+            int t = i;
+            i = j;
+            j = t;
+        }
+        id[i] += id[j];
+        id[j] = i;
+        addFlags(i, flagsOf(j));
+        return i;
+    }
+
+    // seconds to open every site of an N-by-N grid in a random order,
+    // uniting each with its open neighbours
+    private static double fill(int N, int[] order, boolean grid) {
+        boolean[] open = new boolean[N*N];
+        GridUnionFind guf = grid ? new GridUnionFind(N*N) : null;
+        WeightedQuickUnionUF wuf = grid ? null : new WeightedQuickUnionUF(N*N);
+        Stopwatch timer = new Stopwatch();
+        for (int site : order) {
+            open[site] = true;
+            int row = site / N, col = site % N;
+            for (int k = 0; k < 4; k++) {
+                int other;
+                if      (k == 0) other = row > 0     ? site - N : -1;
+                else if (k == 1) other = row < N - 1 ? site + N : -1;
+                else if (k == 2) other = col > 0     ? site - 1 : -1;
+                else             other = col < N - 1 ? site + 1 : -1;
+                if (other < 0 || !open[other]) continue;
+                if (grid) guf.union(site, other);
+                else      wuf.union(site, other);
+            }
+        }
+        return timer.elapsedTime();
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = { 1000, 4000, 16000 };
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+        for (int N : sizes) {
+            int[] order = new int[N*N];
+            for (int i = 0; i < order.length; i++) {
+                int r = StdRandom.uniform(i + 1);   // Fisher-Yates, inside out
+                order[i] = order[r];
+                order[r] = i;
+            }
+            fill(N, order, true);   // warm up both before timing
+            fill(N, order, false);
+            double grid = fill(N, order, true);
+            double weighted = fill(N, order, false);
+            StdOut.printf("N = %5d  GridUnionFind %7.3fs  WeightedQuickUnionUF %7.3fs  ratio %.2f\n",
+                          N, grid, weighted, weighted / grid);
+        }
+    }
+}
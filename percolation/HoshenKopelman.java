@@ -0,0 +1,147 @@
+/****************************************************************************
+ *  Compilation:  javac HoshenKopelman.java
+ *  Execution:  java HoshenKopelman [T]
+ *  Dependencies: Percolation.java StdRandom.java StdOut.java (main only)
+ *
+ *  Decides whether an N-by-N grid of open sites percolates, with one
+ *  streaming Hoshen-Kopelman labeling pass from the top row down.
+ *
+ *  The grid is a bitset: bit row*N + col of open is set if that site is
+ *  open. Only two rows of labels are kept. Each row's labels are merged
+ *  with a small union-find over the labels of the row above, then
+ *  renumbered, so all scratch space is O(N) and allocated once. A label
+ *  is flagged TOP if its cluster reaches the top row; the pass stops as
+ *  soon as a row has no TOP cluster left.
+ *
+ *  main() checks percolates() against Percolation on T random grids
+ *  (default 3000) of sizes 1 to 40, opened with a probability near the
+ *  threshold so that both answers come up often. One instance per size is
+ *  reused across grids, as PercolationStats reuses it across trials.
+ *
+ ****************************************************************************/
+
+import java.util.Arrays;
+
+public class HoshenKopelman {
+    private final int N;
+    private int[] prev, cur;        // label of each site in the row above and this row, -1 if blocked
+    private final int[] parent;     // union-find over labels of the row above and this row
+    private final boolean[] top;    // cluster reaches the top row, valid at roots
+    private final int[] renumber;   // new label of each root while renumbering, -1 if none yet
+    private final boolean[] nextTop;    // top flag of each renumbered label
+
+    public HoshenKopelman(int N) {
+        if (N < 1) throw new IllegalArgumentException();
+        if ((long) N*N > Integer.MAX_VALUE) {   // bit indices are ints, so N <= 46340
+            throw new IllegalArgumentException("N = " + N + " is too large: N*N sites must fit in an int");
+        }
+        this.N = N;
+        prev = new int[N];
+        cur = new int[N];
+        parent = new int[2*N];
+        top = new boolean[2*N];
+        renumber = new int[2*N];
+        nextTop = new boolean[N];
+        Arrays.fill(renumber, -1);
+    }
+
+    // does the grid with the sites set in open percolate?
+    public boolean percolates(long[] open) {
+        int labels = 0;     // labels in use by prev
+        for (int row = 0; row < N; row++) {
+            int next = labels;
+            boolean reachesTop = false;
+            for (int col = 0; col < N; col++) {
+                int site = row*N + col;
+                if ((open[site >>> 6] & (1L << site)) == 0) {
+                    cur[col] = -1;
+                    continue;
+                }
+                int label = -1;
+                if (col > 0 && cur[col-1] >= 0) {
+                    label = find(cur[col-1]);
+                }
+                if (row > 0 && prev[col] >= 0) {
+                    int up = find(prev[col]);
+                    label = label < 0 ? up : union(label, up);
+                }
+                if (label < 0) {    // a new cluster
+                    label = next++;
+                    parent[label] = label;
+                    top[label] = row == 0;
+                }
+                cur[col] = label;
+            }
+
+            // renumber the roots in this row from 0, carrying their flags
+            int count = 0;
+            for (int col = 0; col < N; col++) {
+                if (cur[col] < 0) continue;
+                int root = find(cur[col]);
+                if (renumber[root] < 0) {
+                    renumber[root] = count;
+                    nextTop[count] = top[root];
+                    reachesTop |= top[root];
+                    count++;
+                }
+                cur[col] = renumber[root];
+            }
+            for (int col = 0; col < N; col++) {
+                if (cur[col] < 0) continue;
+                parent[cur[col]] = cur[col];
+                top[cur[col]] = nextTop[cur[col]];
+            }
+            for (int label = 0; label < next; label++) {
+                renumber[label] = -1;
+            }
+
+            if (!reachesTop) return false;  // no open path from the top survives
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+            labels = count;
+        }
+        return true;
+    }
+
+    private int find(int p) {
+        while (parent[p] != p) {
+            parent[p] = parent[parent[p]];  // path halving
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // merge two roots; returns the new root
+    private int union(int i, int j) {
+        if (i == j) return i;
+        parent[j] = i;
+        top[i] |= top[j];
+        return i;
+    }
+
+    public static void main(String[] args) {
+        int T = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        HoshenKopelman[] engines = new HoshenKopelman[41];
+        int percolating = 0;
+        for (int t = 0; t < T; t++) {
+            int N = 1 + StdRandom.uniform(40);
+            int p = 450 + StdRandom.uniform(300);   // open each site with probability p/1000
+            long[] open = new long[(N*N + 63) / 64];
+            Percolation perc = new Percolation(N);
+            for (int site = 0; site < N*N; site++) {
+                if (StdRandom.uniform(1000) >= p) continue;
+                open[site >>> 6] |= 1L << site;
+                perc.openSite(site);
+            }
+            boolean expected = perc.percolates();
+            if (engines[N] == null) engines[N] = new HoshenKopelman(N);
+            if (engines[N].percolates(open) != expected) {
+                throw new RuntimeException("mismatch on grid " + t + ": N = " + N
+                    + ", Percolation says " + expected);
+            }
+            if (expected) percolating++;
+        }
+        StdOut.println(T + " grids agree, " + percolating + " percolate");
+    }
+}
@@ -1,66 +1,100 @@
 /****************************************************************************
  *  Compilation:  javac Percolation.java
  *  Execution:  java Percolation < input.txt
- *  Dependencies: StdIn.java StdOut.java
+ *  Dependencies: GridUnionFind.java StdIn.java StdOut.java
  *
  *  Percolation algorithm.
  *
+ *  One union-find over the N*N sites, with no virtual cells. Each root
+ *  carries flags: TOP if its component touches the top row and BOTTOM if
+ *  it touches the bottom row. GridUnionFind merges the flags when open()
+ *  joins neighbours, so isFull() is one find and percolates() reads a
+ *  field. Keeping the bottom separate from the top avoids backwash
+ *  without a second union-find.
+ *
+ *  Open sites are bits of a long[] grid, bit row*N + col, so the grid
+ *  state takes one bit per site. openAll() opens a batch of sites given
+ *  as zero-based indices. As a PercolationModel its elements are the
+ *  sites, numbered the same way.
+ *
+ *  A site costs about 4.4 bytes: the union-find's int, a quarter byte of
+ *  flags and one bit of state. Site indices are ints, so N is at most
+ *  46340 and the constructor rejects anything larger; N = 50000 would
+ *  need long indices or segmented arrays.
+ *
  ****************************************************************************/
 
-public class Percolation {
+import java.util.Arrays;
+
+public class Percolation implements PercolationModel {
     private int N;                      // N-by-N grid
-    private boolean[] cStates;          // cell states: flase-blocked, true-open
-    private WeightedQuickUnionUF uf1, uf2;    // weighted quick union-find data structure
-    //private QuickFindUF uf1, uf2;       // quick find union-find data structure
-    private int vTop;                   // virtual top cell position: N*N
-    private int vBottom;
+    private long[] cStates;             // cell states, one bit per site: 0-blocked, 1-open
+    private GridUnionFind uf;           // weighted union-find with path halving, TOP | BOTTOM flags
+    private boolean percolates;         // some component has both flags
 
     // constructor: create N-by-N grid, with all sites blocked
     public Percolation(int N) {
         if (N < 1) throw new IllegalArgumentException();
+        if ((long) N*N > Integer.MAX_VALUE) {   // sites are int indices, so N <= 46340
+            throw new IllegalArgumentException("N = " + N + " is too large: N*N sites must fit in an int");
+        }
         this.N = N;
-        uf1 = new WeightedQuickUnionUF(N*N+1); // +1 for virtual top cell
-        uf2 = new WeightedQuickUnionUF(N*N+2); // +2 for virtual top and bottom cells
-        //uf1 = new QuickFindUF(N*N+1);
-        //uf2 = new QuickFindUF(N*N+2);
-        cStates = new boolean[N*N]; 
-        vTop = N * N;
-        vBottom = N * N + 1;
+        uf = new GridUnionFind(N*N);
+        cStates = new long[(N*N + 63) / 64];
+    }
+
+    // block every site again, reusing the arrays
+    public void reset() {
+        Arrays.fill(cStates, 0L);
+        uf.reset();
+        percolates = false;
     }
 
     // open site (row i, column j) if it is not already
     public void open(int i, int j) {
-        if (isOpen(i, j)) return;
-
-        int block = xyTo1D(i, j);
-        cStates[block] = true;
-        
-        if (i != 1 && isOpen(i-1, j)) { // if not top row
-            uf1.union(block, xyTo1D(i-1, j)); 
-            uf2.union(block, xyTo1D(i-1, j)); 
-        }            
-        else if (i == 1) {  // connect to virtual top cell if top row
-            uf1.union(block, vTop);  
-            uf2.union(block, vTop);
-        }
-            
-        if (i != N && isOpen(i+1, j)) { // if not bottom row
-            uf1.union(block, xyTo1D(i+1, j));  
-            uf2.union(block, xyTo1D(i+1, j)); 
-        } 
-        else if (i == N) {  // connect to vitural bottom cell
-            uf2.union(block, vBottom);
-        }           
-            
-        if (j != 1 && isOpen(i, j-1)) { // not left border
-            uf1.union(block, xyTo1D(i, j-1));  
-            uf2.union(block, xyTo1D(i, j-1)); 
+        checkRange(i, j);
+        openSite(xyTo1D(i, j));
+    }
+
+    // open a site given as a zero-based index row*N + col, unchecked
+    void openSite(int site) {
+        if (isOpenSite(site)) return;
+        cStates[site >>> 6] |= 1L << site;
+
+        int row = site / N, col = site % N;
+        if (row == 0)     uf.mark(site, TOP);
+        if (row == N - 1) uf.mark(site, BOTTOM);
+
+        int root = site;
+        if (row > 0     && isOpenSite(site - N)) root = uf.link(root, uf.find(site - N));
+        if (row < N - 1 && isOpenSite(site + N)) root = uf.link(root, uf.find(site + N));
+        if (col > 0     && isOpenSite(site - 1)) root = uf.link(root, uf.find(site - 1));
+        if (col < N - 1 && isOpenSite(site + 1)) root = uf.link(root, uf.find(site + 1));
+
+        if (uf.flags(root) == (TOP | BOTTOM)) percolates = true;
+    }
+
+    public int elements() {     // number of sites
+        return N*N;
+    }
+
+    public void openElement(int site) {     // open a site by zero-based index, unchecked
+        openSite(site);
+    }
+
+    // open each of the sites, given as zero-based indices row*N + col
+    public void openAll(int[] sites) {
+        for (int site : sites) {
+            if (site < 0 || site >= N*N) {
+                throw new IndexOutOfBoundsException("site " + site + " is out of range");
+            }
+            openSite(site);
         }
-            
-        if (j != N && isOpen(i, j+1)) { // not right border
-            uf1.union(block, xyTo1D(i, j+1));  
-            uf2.union(block, xyTo1D(i, j+1));  
-        }            
+    }
+
+    // is the site with zero-based index site open? (shifts use the low 6 bits)
+    private boolean isOpenSite(int site) {
+        return (cStates[site >>> 6] & (1L << site)) != 0;
     }
 
     private void checkRange(int x, int y) {
@@ -77,19 +111,18 @@ public class Percolation {
     // is site (row i, column j) open ?
     public boolean isOpen(int i, int j) {
         checkRange(i, j);
-        return cStates[xyTo1D(i, j)];
+        return isOpenSite(xyTo1D(i, j));
     }
 
     // is site (row i, column j) full ?
     public boolean isFull(int i, int j) {
-        checkRange(i, j);
         if (!isOpen(i, j)) return false;
-        return uf1.connected(vTop, xyTo1D(i, j));
+        return (uf.flags(xyTo1D(i, j)) & TOP) != 0;
     }
 
     // does the system percolate ?
     public boolean percolates() {
-        return uf2.connected(vTop, vBottom);
+        return percolates;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,95 @@
+/****************************************************************************
+ *  Compilation:  javac Percolation3D.java
+ *  Dependencies: GridUnionFind.java PercolationModel.java
+ *
+ *  Site percolation on an N-by-N-by-N cubic lattice, from layer 1 (top)
+ *  to layer N (bottom).
+ *
+ *  The same design as Percolation, with six neighbours per site: open
+ *  sites are bits of a long[] and one GridUnionFind carries TOP | BOTTOM
+ *  flags at its roots. Site (layer k, row i, column j) has the zero-based
+ *  index ((k-1)*N + i-1)*N + j-1.
+ *
+ ****************************************************************************/
+
+import java.util.Arrays;
+
+public class Percolation3D implements PercolationModel {
+    private final int N;                // N-by-N-by-N lattice
+    private final int area;             // N*N sites per layer
+    private final long[] cStates;       // one bit per site: 0-blocked, 1-open
+    private final GridUnionFind uf;     // components, with TOP | BOTTOM flags
+    private boolean percolates;         // some component has both flags
+
+    // create an N-by-N-by-N lattice, with all sites blocked
+    public Percolation3D(int N) {
+        if (N < 1 || (long) N*N*N > Integer.MAX_VALUE) throw new IllegalArgumentException();
+        this.N = N;
+        this.area = N*N;
+        uf = new GridUnionFind(N*area);
+        cStates = new long[(N*area + 63) / 64];
+    }
+
+    public int elements() {     // number of sites
+        return N*area;
+    }
+
+    // block every site again, reusing the arrays
+    public void reset() {
+        Arrays.fill(cStates, 0L);
+        uf.reset();
+        percolates = false;
+    }
+
+    // open site (layer k, row i, column j) if it is not already
+    public void open(int k, int i, int j) {
+        openElement(site(k, i, j));
+    }
+
+    // open a site by zero-based index, unchecked
+    public void openElement(int site) {
+        if (isOpenSite(site)) return;
+        cStates[site >>> 6] |= 1L << site;
+
+        int layer = site / area, row = site / N % N, col = site % N;
+        if (layer == 0)     uf.mark(site, TOP);
+        if (layer == N - 1) uf.mark(site, BOTTOM);
+
+        int root = site;
+        if (layer > 0     && isOpenSite(site - area)) root = uf.link(root, uf.find(site - area));
+        if (layer < N - 1 && isOpenSite(site + area)) root = uf.link(root, uf.find(site + area));
+        if (row > 0       && isOpenSite(site - N))    root = uf.link(root, uf.find(site - N));
+        if (row < N - 1   && isOpenSite(site + N))    root = uf.link(root, uf.find(site + N));
+        if (col > 0       && isOpenSite(site - 1))    root = uf.link(root, uf.find(site - 1));
+        if (col < N - 1   && isOpenSite(site + 1))    root = uf.link(root, uf.find(site + 1));
+
+        if (uf.flags(root) == (TOP | BOTTOM)) percolates = true;
+    }
+
+    private boolean isOpenSite(int site) {
+        return (cStates[site >>> 6] & (1L << site)) != 0;
+    }
+
+    // zero-based index of site (layer k, row i, column j), all from 1
+    private int site(int k, int i, int j) {
+        if (k < 1 || k > N || i < 1 || i > N || j < 1 || j > N) {
+            throw new IndexOutOfBoundsException("Values are out of range");
+        }
+        return ((k-1)*N + (i-1))*N + (j-1);
+    }
+
+    // is site (layer k, row i, column j) open?
+    public boolean isOpen(int k, int i, int j) {
+        return isOpenSite(site(k, i, j));
+    }
+
+    // is site (layer k, row i, column j) connected to the top layer?
+    public boolean isFull(int k, int i, int j) {
+        int site = site(k, i, j);
+        return isOpenSite(site) && (uf.flags(site) & TOP) != 0;
+    }
+
+    public boolean percolates() {
+        return percolates;
+    }
+}
@@ -0,0 +1,61 @@
+/****************************************************************************
+ *  Compilation:  javac PercolationModel.java
+ *  Dependencies: Percolation.java Percolation3D.java BondPercolation.java
+ *
+ *  A lattice whose elements (sites or bonds, numbered from 0) are opened
+ *  one at a time until it percolates from top to bottom. PercolationStats
+ *  drives any model through this interface, and a Factory makes one
+ *  instance per worker.
+ *
+ *  openElement() is unchecked: callers pass 0 <= e < elements().
+ *
+ ****************************************************************************/
+
+public interface PercolationModel {
+    // flag bits the models keep on GridUnionFind roots
+    byte TOP = 1;       // component touches the top of the lattice
+    byte BOTTOM = 2;    // component touches the bottom of the lattice
+
+    int elements();                 // number of sites or bonds that can be opened
+    void openElement(int e);        // open element e if it is not already
+    boolean percolates();           // does the lattice percolate?
+    void reset();                   // block every element again
+
+    // makes models of linear size N
+    interface Factory {
+        PercolationModel create(int N);
+    }
+
+    // site percolation on an N-by-N square grid
+    Factory SITE_2D = new Factory() {
+        public PercolationModel create(int N) {
+            return new Percolation(N);
+        }
+
+        public String toString() {
+            return "site 2D";
+        }
+    };
+
+    // site percolation on an N-by-N-by-N cubic lattice
+    Factory SITE_3D = new Factory() {
+        public PercolationModel create(int N) {
+            return new Percolation3D(N);
+        }
+
+        public String toString() {
+            return "site 3D";
+        }
+    };
+
+    // bond percolation on an N-by-N square grid
+    Factory BOND_2D = new Factory() {
+        public PercolationModel create(int N) {
+            return new BondPercolation(N);
+        }
+
+        public String toString() {
+            return "bond 2D";
+        }
+    };
+}
@@ -1,49 +1,283 @@
 /****************************************************************************
  *  Compilation:  javac PercolationStats.java
- *  Execution:  java PercolationStats N T
- *  Dependencies: StdIn.java StdOut.java
+ *  Execution:  java PercolationStats N T [seed] [threads] [union_find | binary_search]
+ *                  [site2d | site3d | bond2d]
+ *  Dependencies: PercolationModel.java Percolation.java Percolation3D.java
+ *                BondPercolation.java HoshenKopelman.java StdOut.java Stopwatch.java
+ *                java.util.SplittableRandom java.util.concurrent.ForkJoinPool
  *
- *  Perform T independent computational experiments on an N-by-N grid.
+ *  Perform T independent computational experiments on an N-by-N grid,
+ *  or on any PercolationModel of linear size N made by a Factory.
+ *  T below 1 is a precision: trials run until the 95% half-width is under it.
+ *  Trials run in parallel, trial i on its own stream split from seed.
+ *  UNION_FIND: open elements in a shuffled order until the model percolates.
+ *  BINARY_SEARCH: binary-search the shuffled prefix with HoshenKopelman, 2D sites only.
  *
  ****************************************************************************/
 
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public class PercolationStats {
-    private double[] attemps;
+    private static final int TASKS_PER_THREAD = 8;  // leaf tasks per thread, for balance
+    private static final int MIN_TRIALS = 30;       // before trusting the sample variance
+
+    // how a trial finds the number of sites to open
+    public enum Engine { UNION_FIND, BINARY_SEARCH }
+
+    private long trials;    // number of trials run
+    private double mean;    // running mean of the thresholds
+    private double m2;      // running sum of squared deviations from the mean
+
+    private PercolationStats() { }
 
     // perform T independent experiments on an N-by-N grid
-    public PercolationStats(int N, int T) { 
-        if (N < 1 || T < 1) throw new IllegalArgumentException();
-        attemps = new double[T];
-        for (int i = 0; i < T; i++) {
-            Percolation perc = new Percolation(N);
-            int count = 0;
-            while (!perc.percolates()) {
-                int row, col;
-                do {
-                    row = StdRandom.uniform(N) + 1;
-                    col = StdRandom.uniform(N) + 1;
-                } while(perc.isOpen(row, col));
-                perc.open(row, col);
-                count++;            
-            } 
-            attemps[i] = (1. * count) / (N*N);
+    public PercolationStats(int N, int T) {
+        this(N, T, System.nanoTime(), Runtime.getRuntime().availableProcessors());
+    }
+
+    // perform T experiments with a reproducible seed, on the given number of threads
+    public PercolationStats(int N, int T, long seed, int threads) {
+        this(N, T, seed, threads, Engine.UNION_FIND);
+    }
+
+    public PercolationStats(int N, int T, long seed, int threads, Engine engine) {
+        this(PercolationModel.SITE_2D, N, T, seed, threads, engine);
+    }
+
+    // perform T experiments on models of linear size N made by model
+    public PercolationStats(PercolationModel.Factory model, int N, int T, long seed, int threads,
+                            Engine engine) {
+        check(model, N, threads, engine);
+        if (T < 1) throw new IllegalArgumentException();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            runBatch(pool, new Workers(model, N, engine), new SplittableRandom(seed), T);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // run batches of trials until the 95% confidence half-width is at most
+    // precision, or maxTrials have run; prints a line after each batch if
+    // progress. With the same seed, the first k trials are those of the
+    // fixed-T constructor with T = k.
+    public static PercolationStats untilPrecision(PercolationModel.Factory model, int N,
+                                                  Engine engine, double precision, int maxTrials,
+                                                  long seed, int threads, boolean progress) {
+        check(model, N, threads, engine);
+        if (!(precision > 0) || maxTrials < 1) throw new IllegalArgumentException();
+        PercolationStats stats = new PercolationStats();
+        SplittableRandom master = new SplittableRandom(seed);
+        int batch = Math.max(MIN_TRIALS, threads * TASKS_PER_THREAD);
+        Workers workers = new Workers(model, N, engine);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            while (stats.trials < maxTrials
+                   && (stats.trials < MIN_TRIALS || stats.halfWidth() > precision)) {
+                int count = (int) Math.min(batch, maxTrials - stats.trials);
+                stats.runBatch(pool, workers, master, count);
+                if (progress) {
+                    StdOut.printf("# %d trials, mean = %.6f, half-width = %.6f\n",
+                                  stats.trials, stats.mean(), stats.halfWidth());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return stats;
+    }
+
+    private static void check(PercolationModel.Factory model, int N, int threads, Engine engine) {
+        if (model == null || engine == null) throw new NullPointerException();
+        if (N < 1 || threads < 1) throw new IllegalArgumentException();
+        if (engine == Engine.BINARY_SEARCH && model != PercolationModel.SITE_2D) {
+            throw new IllegalArgumentException("BINARY_SEARCH handles 2D site percolation only");
+        }
+    }
+
+    // run the next count trials in parallel and add them, in order, to the statistics
+    private void runBatch(ForkJoinPool pool, Workers workers, SplittableRandom master, int count) {
+        double[] results = new double[count];
+        SplittableRandom[] randoms = new SplittableRandom[count];
+        for (int i = 0; i < count; i++) {
+            randoms[i] = master.split();
+        }
+        int grain = Math.max(1, count / (pool.getParallelism() * TASKS_PER_THREAD));
+        pool.invoke(new Trials(workers, randoms, results, 0, count, grain));
+        for (double x : results) {
+            add(x);
+        }
+    }
+
+    private void add(double x) {    // Welford's update
+        trials++;
+        double delta = x - mean;
+        mean += delta / trials;
+        m2 += delta * (x - mean);
+    }
+
+    // the model and scratch arrays one worker thread reuses for all its trials
+    private static class Scratch {
+        private final PercolationModel lattice;     // UNION_FIND only
+        private final HoshenKopelman hk;            // BINARY_SEARCH only
+        private final long[] open;                  // BINARY_SEARCH grid
+        private final int[] sites;                  // 0 to elements-1 between trials
+
+        Scratch(PercolationModel.Factory model, int N, Engine engine) {
+            int n;
+            if (engine == Engine.BINARY_SEARCH) {
+                lattice = null;
+                hk = new HoshenKopelman(N);
+                open = new long[(N*N + 63) / 64];
+                n = N*N;
+            } else {
+                lattice = model.create(N);
+                hk = null;
+                open = null;
+                n = lattice.elements();
+            }
+            sites = new int[n];
+            identity(sites);
+        }
+    }
+
+    // one Scratch per worker thread of a run, kept across its batches
+    private static class Workers extends ThreadLocal<Scratch> {
+        private final PercolationModel.Factory model;
+        private final int N;
+        private final Engine engine;
+
+        Workers(PercolationModel.Factory model, int N, Engine engine) {
+            this.model = model;
+            this.N = N;
+            this.engine = engine;
+        }
+
+        protected Scratch initialValue() {
+            return new Scratch(model, N, engine);
+        }
+    }
+
+    // runs trials lo to hi-1 into results, splitting the range until it is at most grain
+    private static class Trials extends RecursiveAction {
+        private final Workers workers;
+        private final SplittableRandom[] randoms;
+        private final double[] results;
+        private final int lo, hi, grain;
+
+        Trials(Workers workers, SplittableRandom[] randoms, double[] results,
+               int lo, int hi, int grain) {
+            this.workers = workers;
+            this.randoms = randoms;
+            this.results = results;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        protected void compute() {
+            if (hi - lo <= grain) {
+                Scratch scratch = workers.get();
+                for (int i = lo; i < hi; i++) {
+                    if (scratch.lattice == null) {
+                        results[i] = searchTrial(scratch.hk, scratch.open, randoms[i], scratch.sites);
+                    } else {
+                        scratch.lattice.reset();
+                        results[i] = trial(scratch.lattice, randoms[i], scratch.sites);
+                    }
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Trials(workers, randoms, results, lo, mid, grain),
+                      new Trials(workers, randoms, results, mid, hi, grain));
+        }
+    }
+
+    // open elements in random order until the lattice percolates; returns the
+    // fraction opened. lattice must be all blocked. order must hold 0 to
+    // lattice.elements()-1 in order, and does again on return.
+    private static double trial(PercolationModel lattice, SplittableRandom random, int[] order) {
+        int count = 0;
+        while (!lattice.percolates()) {
+            int r = count + random.nextInt(order.length - count);
+            swap(order, count, r);
+            lattice.openElement(order[count]);
+            count++;
         }
+        identity(order);
+        return (1. * count) / order.length;
+    }
+
+    // shuffle all the sites, then binary-search the shortest prefix of the
+    // order that percolates; returns its fraction of the sites. open must be
+    // all clear, and sites is as for trial(); both are restored.
+    private static double searchTrial(HoshenKopelman hk, long[] open, SplittableRandom random,
+                                      int[] sites) {
+        int n = sites.length;
+        for (int k = 0; k < n - 1; k++) {
+            int r = k + random.nextInt(n - k);
+            swap(sites, k, r);
+        }
+
+        int lo = 0, hi = n;     // the first lo sites do not percolate, the first hi do
+        int opened = 0;         // sites[0] to sites[opened-1] are set in open
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            for (; opened < mid; opened++) {
+                open[sites[opened] >>> 6] |= 1L << sites[opened];
+            }
+            for (; opened > mid; opened--) {
+                open[sites[opened-1] >>> 6] &= ~(1L << sites[opened-1]);
+            }
+            if (hk.percolates(open)) hi = mid;
+            else                     lo = mid;
+        }
+
+        for (; opened > 0; opened--) {
+            open[sites[opened-1] >>> 6] &= ~(1L << sites[opened-1]);
+        }
+        identity(sites);
+        return (1. * hi) / n;
+    }
+
+    // a[k] = k for every k
+    private static void identity(int[] a) {
+        for (int k = 0; k < a.length; k++) {
+            a[k] = k;
+        }
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    public long trials() {  // number of trials run
+        return trials;
     }
 
     public double mean() {  // sample mean of percolation threshold
-        return StdStats.mean(attemps);
+        return mean;
     }
 
     public double stddev() {  // sample standard deviation of percolation threshold
-        return StdStats.stddev(attemps);
+        return Math.sqrt(m2 / (trials - 1));
+    }
+
+    private double halfWidth() {    // half-width of the 95% confidence interval
+        return (1.96*stddev())/Math.sqrt(trials);
     }
 
     public double confidenceLo() {  // low endpoint of 95% confidence interval
-        return mean()-((1.96*stddev())/Math.sqrt(attemps.length));
+        return mean()-halfWidth();
     }
 
     public double confidenceHi() {  // high endpoint of 95% confidence interval
-        return mean()+((1.96*stddev())/Math.sqrt(attemps.length));
+        return mean()+halfWidth();
     }
 
     public static double timeTrial(int N, int T) {
@@ -52,15 +286,35 @@ public class PercolationStats {
         return timer.elapsedTime();
     }
 
-    public static void main(String[] args) {  // test client 
+    public static void main(String[] args) {  // test client
         if (args.length < 2) throw new IllegalArgumentException();
         int N = Integer.parseInt(args[0]);
-        int T = Integer.parseInt(args[1]);
+        double T = Double.parseDouble(args[1]);     // a count, or a precision if below 1
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                                      : Runtime.getRuntime().availableProcessors();
 
-        PercolationStats ps = new PercolationStats(N, T);
+        Engine engine = args.length > 4 ? Engine.valueOf(args[4].toUpperCase())
+                                        : Engine.UNION_FIND;
+
+        PercolationModel.Factory model = PercolationModel.SITE_2D;
+        if (args.length > 5) {
+            if      (args[5].equalsIgnoreCase("site2d")) model = PercolationModel.SITE_2D;
+            else if (args[5].equalsIgnoreCase("site3d")) model = PercolationModel.SITE_3D;
+            else if (args[5].equalsIgnoreCase("bond2d")) model = PercolationModel.BOND_2D;
+            else throw new IllegalArgumentException("unknown model " + args[5]);
+        }
+
+        PercolationStats ps;
+        if (T < 1) {
+            ps = untilPrecision(model, N, engine, T, Integer.MAX_VALUE, seed, threads, true);
+            StdOut.println("trials                  = " + ps.trials());
+        } else {
+            ps = new PercolationStats(model, N, (int) T, seed, threads, engine);
+        }
         StdOut.println("mean                    = " + ps.mean());
         StdOut.println("stddev                  = " + ps.stddev());
-        StdOut.println("95% confidence interval = " + ps.confidenceLo() + ", " 
-                                                    + ps.confidenceHi()); 
+        StdOut.println("95% confidence interval = " + ps.confidenceLo() + ", "
+                                                    + ps.confidenceHi());
     }
-}
\ No newline at end of file
+}